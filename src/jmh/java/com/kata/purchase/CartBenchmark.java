@@ -0,0 +1,145 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart hot paths by cart size, share of lines repeating an earlier product id and product id length.
+ * Run with {@code -prof gc} to get the allocation rate next to throughput and average time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int cartSize;
+
+    @Param({"0.0", "0.5"})
+    private double duplicateRatio;
+
+    @Param({"8", "32"})
+    private int idLength;
+
+    private Product[] products;
+    private Cart cart;
+    private Item item;
+    private StringBuilder text;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        products = products(cartSize, duplicateRatio, idLength);
+        cart = new Cart();
+        cart.add(items(products));
+        item = cart.getItems().values().iterator().next();
+        text = new StringBuilder(cart.print().length());
+        buffer = ByteBuffer.allocateDirect(cart.print().length() * 4);
+    }
+
+    static Product[] products(int size, double duplicateRatio, int idLength) {
+        Random random = new Random(42);
+        Product[] products = new Product[size];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct > 0 && random.nextDouble() < duplicateRatio) {
+                products[i] = products[random.nextInt(i)];
+                continue;
+            }
+            products[i] = new Product.ProductBuilder(id(distinct, idLength))
+                    .label("LABEL" + distinct)
+                    .priceInCents(1 + random.nextInt(100_000))
+                    .available(random.nextBoolean())
+                    .build();
+            distinct++;
+        }
+        return products;
+    }
+
+    static Item[] items(Product[] products) {
+        Item[] items = new Item[products.length];
+        for (int i = 0; i < products.length; i++) {
+            items[i] = new Item(products[i]);
+        }
+        return items;
+    }
+
+    private static String id(int index, int length) {
+        StringBuilder sb = new StringBuilder(length).append('P');
+        String suffix = Integer.toString(index);
+        for (int i = sb.length() + suffix.length(); i < length; i++) {
+            sb.append('0');
+        }
+        return sb.append(suffix).toString();
+    }
+
+    /**
+     * Fresh, unattached items for every invocation so that add() never sees lines owned by another cart.
+     */
+    @State(Scope.Thread)
+    public static class AddState {
+        Item[] items;
+
+        @Setup(Level.Invocation)
+        public void setUp(CartBenchmark benchmark) {
+            items = items(benchmark.products);
+        }
+    }
+
+    @Benchmark
+    public Cart add(AddState state) throws PurchaseException {
+        Cart cart = new Cart();
+        cart.add(state.items);
+        return cart;
+    }
+
+    @Benchmark
+    public Cart addAll(AddState state) throws PurchaseException {
+        Cart cart = new Cart();
+        cart.addAll(Arrays.asList(state.items));
+        return cart;
+    }
+
+    @Benchmark
+    public double price() {
+        return cart.price();
+    }
+
+    @Benchmark
+    public String print() {
+        return cart.print();
+    }
+
+    @Benchmark
+    public StringBuilder printToAppendable() throws IOException {
+        text.setLength(0);
+        return cart.printTo(text);
+    }
+
+    @Benchmark
+    public ByteBuffer printToByteBuffer() {
+        buffer.clear();
+        return cart.printTo(buffer);
+    }
+
+    @Benchmark
+    public StringBuilder printPage() throws IOException {
+        text.setLength(0);
+        int from = Math.min(100, cart.getItems().size());
+        return cart.printTo(text, from, Math.min(from + 50, cart.getItems().size()));
+    }
+
+    @Benchmark
+    public String printItem() {
+        return item.print();
+    }
+}
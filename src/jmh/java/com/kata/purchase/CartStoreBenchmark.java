@@ -0,0 +1,51 @@
+package com.kata.purchase;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session lookups from several threads against a store holding a fraction of the sessions, so that
+ * misses create carts and evict others. Vary threads with {@code -t} and stripes with {@code -p segments}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CartStoreBenchmark {
+
+    @Param({"1", "64"})
+    private int segments;
+
+    @Param({"100000"})
+    private int sessions;
+
+    private CartStore store;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        store = new CartStore.CartStoreBuilder()
+                .maximumSize(sessions / 2)
+                .segments(segments)
+                .build();
+        sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = "SESSION" + i;
+        }
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%nhits %d, misses %d, evictions %d%n", store.getHits(), store.getMisses(), store.getEvictions());
+    }
+
+    @Benchmark
+    public Cart getOrCreate() {
+        return store.getOrCreate(sessionIds[ThreadLocalRandom.current().nextInt(sessionIds.length)]);
+    }
+}
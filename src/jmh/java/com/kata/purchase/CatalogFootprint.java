@@ -0,0 +1,47 @@
+package com.kata.purchase;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained heap of N items (default 1M) spread over 10k product ids, with one product built per
+ * request and with products shared through a {@link ProductCatalog}.
+ */
+public class CatalogFootprint {
+
+    private static final int DISTINCT_PRODUCTS = 10_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Item[] perRequest = new Item[size];
+        for (int i = 0; i < size; i++) {
+            perRequest[i] = new Item(product(i % DISTINCT_PRODUCTS));
+        }
+        long perRequestBytes = GraphLayout.parseInstance((Object) perRequest).totalSize();
+        perRequest = null;
+
+        ProductCatalog catalog = new ProductCatalog(DISTINCT_PRODUCTS);
+        Item[] shared = new Item[size];
+        for (int i = 0; i < size; i++) {
+            shared[i] = new Item(catalog.intern(product(i % DISTINCT_PRODUCTS)));
+        }
+        long sharedBytes = GraphLayout.parseInstance(shared, catalog).totalSize();
+
+        System.out.printf("%,d items, %,d products%n", size, DISTINCT_PRODUCTS);
+        System.out.printf("product per request: %,d bytes%n", perRequestBytes);
+        System.out.printf("catalog products:    %,d bytes (catalog included)%n", sharedBytes);
+        System.out.printf("saved:               %,d bytes (%.1f%%)%n",
+                perRequestBytes - sharedBytes, 100D * (perRequestBytes - sharedBytes) / perRequestBytes);
+    }
+
+    /**
+     * Builds the product the way a request handler does, from freshly decoded strings.
+     */
+    private static Product product(int index) {
+        return new Product.ProductBuilder(new String("PRODUCT-" + index))
+                .label(new String("Product label " + index))
+                .priceInCents(100 + index)
+                .available(true)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import com.kata.purchase.metrics.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of N checkouts (default 50k) all in flight at once, each a 5-line cart, through a
+ * {@link CheckoutPipeline} against a pool of platform threads checking out synchronously (default 200).
+ * Prints throughput and latency percentiles, from submission to completion, of the last of 5 rounds.
+ * Pass the checkouts, pool size and pipeline workers per stage through {@code -Djmh.args="50000 200 1"}.
+ */
+public class CheckoutLoad {
+
+    private static final int ROUNDS = 5;
+    private static final int LINES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int checkouts = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        ProductCatalog catalog = new ProductCatalog();
+        Product[] products = CartBenchmark.products(1_000, 0, 12);
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        for (int i = 0; i < products.length; i++) {
+            products[i] = inventory.track(catalog.intern(products[i]));
+            inventory.restock(products[i].getId(), Long.MAX_VALUE / 2);
+        }
+        Random random = new Random(42);
+        Cart[] carts = new Cart[checkouts];
+        for (int i = 0; i < checkouts; i++) {
+            carts[i] = new Cart();
+            for (int line = 0; line < LINES; line++) {
+                carts[i].add(new Item(products[random.nextInt(products.length)], 1 + random.nextInt(3)));
+            }
+        }
+
+        try (CheckoutPipeline pipeline = new CheckoutPipeline.CheckoutPipelineBuilder()
+                .inventory(inventory)
+                .workers(workers)
+                .build()) {
+            for (int round = 1; round <= ROUNDS; round++) {
+                Histogram latencies = new Histogram();
+                long start = System.nanoTime();
+                List<CompletableFuture<?>> pending = new ArrayList<>(checkouts);
+                for (Cart cart : carts) {
+                    long submitted = System.nanoTime();
+                    pending.add(pipeline.checkout(cart)
+                            .whenComplete((receipt, failure) -> latencies.record(System.nanoTime() - submitted)));
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get();
+                report(round, "pipeline, " + workers + " worker(s) per stage", checkouts, start, latencies);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int round = 1; round <= ROUNDS; round++) {
+            Histogram latencies = new Histogram();
+            long start = System.nanoTime();
+            List<CompletableFuture<?>> pending = new ArrayList<>(checkouts);
+            for (Cart cart : carts) {
+                long submitted = System.nanoTime();
+                pending.add(CompletableFuture.runAsync(() -> {
+                    checkout(cart, inventory);
+                    latencies.record(System.nanoTime() - submitted);
+                }, pool));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get();
+            report(round, threads + " platform threads", checkouts, start, latencies);
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * The same steps as the pipeline, on the calling thread.
+     */
+    private static void checkout(Cart cart, Inventory inventory) {
+        List<Inventory.Reservation> reservations = new ArrayList<>();
+        for (Item line : cart.getItems().values()) {
+            if (!line.isValid() || !line.getProduct().isAvailable()) {
+                throw new IllegalStateException("Line not available");
+            }
+        }
+        for (Item line : cart.getItems().values()) {
+            Inventory.Reservation reservation = inventory.reservation(line.getId());
+            if (!reservation.hold(line.getQuantity())) {
+                throw new IllegalStateException("Line not reservable");
+            }
+            reservations.add(reservation);
+        }
+        cart.priceInCents();
+        cart.print();
+        reservations.forEach(Inventory.Reservation::commit);
+    }
+
+    private static void report(int round, String name, int checkouts, long start, Histogram latencies) {
+        if (round < ROUNDS) {
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-36s %,9.0f checkouts/s  p50 %,8.2f ms  p99 %,8.2f ms  p99.9 %,8.2f ms%n",
+                name, checkouts / seconds,
+                latencies.valueAtPercentile(50) / 1e6,
+                latencies.valueAtPercentile(99) / 1e6,
+                latencies.valueAtPercentile(99.9) / 1e6);
+    }
+}
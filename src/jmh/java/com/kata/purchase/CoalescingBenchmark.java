@@ -0,0 +1,80 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A storm of increments and decrements on a few hot lines of a journaled cart, written one by one or
+ * through a {@link CoalescingCart}. The share of coalesced operations is printed after each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoalescingBenchmark {
+
+    @Param({"1", "8"})
+    private int hotLines;
+
+    private Path directory;
+    private CartJournal journal;
+    private Cart lines;
+    private JournaledCart journaled;
+    private CoalescingCart coalescing;
+    private String[] productIds;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, PurchaseException {
+        directory = Files.createTempDirectory("cart-journal");
+        journal = CartJournal.open(directory, new ProductCatalog());
+        Product[] products = CartBenchmark.products(100, 0, 12);
+        lines = new Cart();
+        journaled = journal.journaled(1, lines);
+        journaled.add(CartBenchmark.items(products));
+        coalescing = new CoalescingCart.CoalescingCartBuilder(lines)
+                .writeThrough(journaled)
+                .build();
+        productIds = new String[hotLines];
+        for (int i = 0; i < hotLines; i++) {
+            productIds[i] = products[i].getId();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        coalescing.flush();
+        journal.snapshot(Collections.singletonMap(1L, lines));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.printf("%ncoalesced %,d of %,d operations%n", coalescing.getCoalescedOps(), coalescing.getBufferedOps());
+        journal.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public ErrorCode journaled() {
+        int op = next++;
+        String productId = productIds[op % productIds.length];
+        return op % 3 == 2 ? journaled.tryDecrementQuantity(productId) : journaled.tryIncrementQuantity(productId);
+    }
+
+    @Benchmark
+    public ErrorCode coalesced() {
+        int op = next++;
+        String productId = productIds[op % productIds.length];
+        return op % 3 == 2 ? coalescing.tryDecrementQuantity(productId) : coalescing.tryIncrementQuantity(productId);
+    }
+}
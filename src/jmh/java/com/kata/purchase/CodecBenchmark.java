@@ -0,0 +1,66 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a batch of 10k abandoned carts of 20 lines over 5k products.
+ * Bytes per cart are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final int CARTS = 10_000;
+    private static final int LINES = 20;
+
+    private Cart[] carts;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Product[] products = CartBenchmark.products(5_000, 0, 12);
+        carts = new Cart[CARTS];
+        for (int c = 0; c < CARTS; c++) {
+            carts[c] = new Cart();
+            for (int l = 0; l < LINES; l++) {
+                carts[c].add(new Item(products[(c * 31 + l * 17) % products.length], 1 + l % 3));
+            }
+        }
+        buffer = ByteBuffer.allocateDirect(64 << 20);
+        encoded = encode().duplicate();
+        encoded.flip();
+        System.out.printf("%n%d bytes per cart%n", encoded.remaining() / CARTS);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        buffer.clear();
+        CartEncoder encoder = new CartEncoder();
+        encoder.writeHeader(buffer);
+        for (Cart cart : carts) {
+            encoder.write(cart, buffer);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Cart decode() {
+        ByteBuffer input = encoded.duplicate();
+        CartDecoder decoder = new CartDecoder();
+        decoder.readHeader(input);
+        Cart last = null;
+        while (input.hasRemaining()) {
+            last = decoder.read(input);
+        }
+        return last;
+    }
+}
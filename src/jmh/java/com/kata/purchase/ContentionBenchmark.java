@@ -0,0 +1,56 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several threads editing one shared cart: {@link ConcurrentCart}, whose lines are updated under
+ * 16 striped locks, against a {@link SynchronizedCart}, one lock around a plain {@link Cart}.
+ * Vary threads with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @Param({"concurrent", "synchronized"})
+    private String implementation;
+
+    @Param({"16", "1000"})
+    private int lines;
+
+    private ShoppingCart cart;
+    private String[] productIds;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        cart = "concurrent".equals(implementation) ? new ConcurrentCart() : new SynchronizedCart(new Cart());
+        Product[] products = CartBenchmark.products(lines, 0, 8);
+        cart.add(CartBenchmark.items(products));
+        productIds = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            productIds[i] = products[i].getId();
+        }
+    }
+
+    @Benchmark
+    @Group("edit")
+    @GroupThreads(7)
+    public void increment() throws PurchaseException {
+        cart.incrementQuantity(productIds[ThreadLocalRandom.current().nextInt(productIds.length)]);
+    }
+
+    @Benchmark
+    @Group("edit")
+    @GroupThreads(1)
+    public long price() {
+        return cart.priceInCents();
+    }
+}
@@ -0,0 +1,167 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import of a 100k-line cart from a CSV or JSON file, streamed through a reader against the whole
+ * file read into a String first, and export of the same cart. Next to the imports (or exports) per
+ * second, reports the MB/s of text read (or written) and prints the peak heap of each iteration, which holds
+ * the 100k-line cart being exported besides the one being imported. Run with {@code -prof gc} for the
+ * allocation per import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"100000"})
+    private int lines;
+
+    @Param({"csv", "json"})
+    private String format;
+
+    @Param({"1024"})
+    private int batchSize;
+
+    private Path file;
+    private double fileMegabytes;
+    private Cart cart;
+
+    /**
+     * Megabytes of text handled: the {@code :megabytes} secondary result, in MB/s although JMH labels it ops/s.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Text {
+        public double megabytes;
+    }
+
+    /**
+     * Prints the sum of the heap pools' peak usage over each iteration, the peaks being reset after a full collection.
+     */
+    @State(Scope.Thread)
+    public static class Heap {
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void report() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            System.out.printf(" (peak heap %,.1f MB)", peak / 1e6);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException, PurchaseException {
+        Random random = new Random(42);
+        Product[] products = CartBenchmark.products(lines, 0, 12);
+        cart = new Cart();
+        for (Product product : products) {
+            cart.add(new Item(product, 1 + random.nextInt(5)));
+        }
+        file = Files.createTempFile("cart", "." + format);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+        fileMegabytes = Files.size(file) / 1e6;
+        System.out.printf("%n%s input: %,d bytes%n", format, Files.size(file));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Cart streamed(Text text, Heap heap) throws IOException, PurchaseException {
+        text.megabytes += fileMegabytes;
+        Cart imported = new Cart();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            read(reader, imported);
+        }
+        return imported;
+    }
+
+    @Benchmark
+    public Cart materialized(Text text, Heap heap) throws IOException, PurchaseException {
+        text.megabytes += fileMegabytes;
+        Cart imported = new Cart();
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        read(new StringReader(content), imported);
+        return imported;
+    }
+
+    @Benchmark
+    public long export(Text text, Heap heap) throws IOException {
+        try (CountingWriter writer = new CountingWriter()) {
+            write(new BufferedWriter(writer));
+            text.megabytes += writer.count / 1e6;
+            return writer.count;
+        }
+    }
+
+    private void read(Reader reader, Cart into) throws IOException, PurchaseException {
+        if ("csv".equals(format)) {
+            CartCsv.read(reader, into, batchSize);
+        } else {
+            CartJson.read(reader, into, batchSize);
+        }
+    }
+
+    private void write(Writer writer) throws IOException {
+        if ("csv".equals(format)) {
+            CartCsv.write(cart, writer);
+        } else {
+            CartJson.write(cart, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Sink counting what it is given, so that export is measured without any I/O.
+     */
+    private static class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of journaling a cart mutation: the same increment on a plain cart and on a journaled one.
+ * Segments are compacted by a snapshot after every iteration to bound disk usage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private Path directory;
+    private CartJournal journal;
+    private Cart cart;
+    private Cart journaledLines;
+    private JournaledCart journaled;
+    private String[] productIds;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, PurchaseException {
+        directory = Files.createTempDirectory("cart-journal");
+        journal = CartJournal.open(directory, new ProductCatalog());
+        Product[] products = CartBenchmark.products(100, 0, 12);
+        cart = new Cart();
+        cart.add(CartBenchmark.items(products));
+        journaledLines = new Cart();
+        journaled = journal.journaled(1, journaledLines);
+        journaled.add(CartBenchmark.items(products));
+        productIds = new String[products.length];
+        for (int i = 0; i < products.length; i++) {
+            productIds[i] = products[i].getId();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        journal.snapshot(Collections.singletonMap(1L, journaledLines));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public ErrorCode plain() {
+        return cart.tryIncrementQuantity(productIds[next++ % productIds.length]);
+    }
+
+    @Benchmark
+    public ErrorCode journaled() {
+        return journaled.tryIncrementQuantity(productIds[next++ % productIds.length]);
+    }
+}
@@ -0,0 +1,73 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line store of {@link Cart} (map of attached items) against {@link CompactCart} (open addressing over
+ * parallel arrays): quantity updates on an existing cart, and building a short-lived cart from scratch.
+ * Lines are updated in random order. Products come from a {@link ProductCatalog}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineStoreBenchmark {
+
+    @Param({"cart", "compact"})
+    private String implementation;
+
+    @Param({"16", "10000"})
+    private int lines;
+
+    private Item[] items;
+    private String[] productIds;
+    private ShoppingCart cart;
+    private int next;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Product[] products = CartBenchmark.products(lines, 0, 12);
+        ProductCatalog catalog = new ProductCatalog();
+        for (int i = 0; i < lines; i++) {
+            products[i] = catalog.intern(products[i]);
+        }
+        items = CartBenchmark.items(products);
+        productIds = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            productIds[i] = products[i].getId();
+        }
+        Collections.shuffle(Arrays.asList(productIds), new Random(42));
+        cart = newCart();
+        cart.add(items);
+    }
+
+    private ShoppingCart newCart() {
+        return "cart".equals(implementation) ? new Cart() : new CompactCart();
+    }
+
+    @Benchmark
+    public ErrorCode increment() {
+        return cart.tryIncrementQuantity(productIds[next++ % productIds.length]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public long build() throws PurchaseException {
+        long total = 0;
+        for (int i = 0; i < 1000; i++) {
+            ShoppingCart built = newCart();
+            built.add(items[i % items.length], items[(i + 1) % items.length], items[(i + 2) % items.length]);
+            total += built.priceInCents();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,30 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained heap of the line store of one cart of N lines (default 100k): {@link Cart} against
+ * {@link CompactCart}, products excluded (but not the line registrations Cart adds to them).
+ * Pass the size through {@code -Djmh.args}.
+ */
+public class LineStoreFootprint {
+
+    public static void main(String[] args) throws PurchaseException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Product[] cartProducts = CartBenchmark.products(size, 0, 12);
+        long productBytes = GraphLayout.parseInstance((Object) cartProducts).totalSize();
+        Cart cart = new Cart();
+        cart.add(CartBenchmark.items(cartProducts));
+        long cartBytes = GraphLayout.parseInstance(cart, cartProducts).totalSize() - productBytes;
+
+        Product[] compactProducts = CartBenchmark.products(size, 0, 12);
+        CompactCart compact = new CompactCart(size);
+        compact.add(CartBenchmark.items(compactProducts));
+        long compactBytes = GraphLayout.parseInstance(compact, compactProducts).totalSize() - productBytes;
+
+        System.out.printf("%,d lines%n", size);
+        System.out.printf("Cart:        %,d bytes (%.1f per line)%n", cartBytes, (double) cartBytes / size);
+        System.out.printf("CompactCart: %,d bytes (%.1f per line)%n", compactBytes, (double) compactBytes / size);
+    }
+}
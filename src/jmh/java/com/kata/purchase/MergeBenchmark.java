@@ -0,0 +1,65 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff and merge of two 10k-line carts sharing half of their products, and the encoded size of the
+ * delta against the whole cart (printed once at setup).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"10000"})
+    private int lines;
+
+    private Cart stored;
+    private Cart guest;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Random random = new Random(42);
+        Product[] products = CartBenchmark.products(lines * 3 / 2, 0, 12);
+        stored = new Cart();
+        guest = new Cart();
+        for (int i = 0; i < lines; i++) {
+            stored.add(new Item(products[i], 1 + random.nextInt(5)));
+            guest.add(new Item(products[lines / 2 + i], 1 + random.nextInt(5)));
+        }
+        buffer = ByteBuffer.allocateDirect(lines * 64);
+        CartDelta.merge(stored, guest, MergePolicy.SUM).writeTo(buffer);
+        int deltaBytes = buffer.position();
+        buffer.clear();
+        CartEncoder encoder = new CartEncoder();
+        encoder.writeHeader(buffer);
+        encoder.write(stored, buffer);
+        System.out.printf("%nmerge delta: %,d bytes, whole cart: %,d bytes%n", deltaBytes, buffer.position());
+    }
+
+    @Benchmark
+    public CartDelta diff() {
+        return CartDelta.diff(stored, guest);
+    }
+
+    @Benchmark
+    public CartDelta merge() {
+        return CartDelta.merge(stored, guest, MergePolicy.SUM);
+    }
+
+    @Benchmark
+    public ByteBuffer mergeAndEncode() {
+        buffer.clear();
+        CartDelta.merge(stored, guest, MergePolicy.SUM).writeTo(buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart hot paths with metrics disabled (the default) and enabled, each in its own JVM since the
+ * {@code purchase.metrics} property is read once. Disabled should match the numbers of
+ * {@link CartBenchmark} for the same operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+
+    private Cart cart;
+    private String[] productIds;
+    private StringBuilder text;
+    private int next;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Product[] products = CartBenchmark.products(100, 0, 12);
+        cart = new Cart();
+        cart.add(CartBenchmark.items(products));
+        productIds = new String[products.length * 2];
+        for (int i = 0; i < products.length; i++) {
+            productIds[2 * i] = products[i].getId();
+            productIds[2 * i + 1] = "MISSING" + i;
+        }
+        text = new StringBuilder(cart.print().length());
+    }
+
+    private ErrorCode increment() {
+        return cart.tryIncrementQuantity(productIds[next++ % productIds.length]);
+    }
+
+    private StringBuilder print() throws IOException {
+        text.setLength(0);
+        return cart.printTo(text);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=false")
+    public ErrorCode incrementDisabled() {
+        return increment();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=true")
+    public ErrorCode incrementEnabled() {
+        return increment();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=false")
+    public double priceDisabled() {
+        return cart.price();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=true")
+    public double priceEnabled() {
+        return cart.price();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=false")
+    public StringBuilder printDisabled() throws IOException {
+        return print();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.metrics=true")
+    public StringBuilder printEnabled() throws IOException {
+        return print();
+    }
+}
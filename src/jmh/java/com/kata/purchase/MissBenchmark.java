@@ -0,0 +1,54 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of incrementing a product id that is not in the cart: throwing with and without a stack trace,
+ * and the non-throwing variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MissBenchmark {
+
+    private Cart cart;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        cart = new Cart();
+        cart.add(CartBenchmark.items(CartBenchmark.products(100, 0, 8)));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.exception.stackTrace=true")
+    public ErrorCode throwingWithStackTrace() {
+        return incrementMissing();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dpurchase.exception.stackTrace=false")
+    public ErrorCode throwingWithoutStackTrace() {
+        return incrementMissing();
+    }
+
+    @Benchmark
+    public ErrorCode nonThrowing() {
+        return cart.tryIncrementQuantity("STALE-ID");
+    }
+
+    private ErrorCode incrementMissing() {
+        try {
+            cart.incrementQuantity("STALE-ID");
+            return null;
+        } catch (PurchaseException e) {
+            return e.getCode();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.kata.purchase;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sums quantity * price over a cart's lines with the former boxed Double reduction and with cents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"100", "10000"})
+    private int lines;
+
+    private List<Double> prices;
+    private int[] quantities;
+    private long[] pricesInCents;
+
+    @Setup
+    public void setUp() {
+        Double[] boxed = new Double[lines];
+        quantities = new int[lines];
+        pricesInCents = new long[lines];
+        for (int i = 0; i < lines; i++) {
+            boxed[i] = (i % 1000) / 100D + 0.1;
+            quantities[i] = 1 + i % 7;
+            pricesInCents[i] = Money.toCents(boxed[i]);
+        }
+        prices = Arrays.asList(boxed);
+    }
+
+    @Benchmark
+    public Double doubleReduce() {
+        int[] quantities = this.quantities;
+        Double total = 0D;
+        for (int i = 0; i < quantities.length; i++) {
+            Double line = quantities[i] * prices.get(i);
+            total = total + line;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long centsSum() {
+        int[] quantities = this.quantities;
+        long[] pricesInCents = this.pricesInCents;
+        long total = 0;
+        for (int i = 0; i < quantities.length; i++) {
+            total += quantities[i] * pricesInCents[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,138 @@
+package com.kata.purchase;
+
+import com.kata.purchase.metrics.Histogram;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap and GC pauses of N live carts (default 200k) of 10 lines each, as {@link Cart}s and as
+ * {@link OffHeapCart}s sharing one {@link OffHeapLineStore}, all over 1,000 catalog products. After
+ * building the population, replaces random carts with new ones (default 2M times) and prints the GC
+ * pauses seen meanwhile. Pass the carts, lines and replacements through {@code -Djmh.args="200000 10 2000000"}.
+ */
+public class OffHeapFootprint {
+
+    private static volatile Histogram pauses = new Histogram();
+    private static final AtomicLong pauseMillis = new AtomicLong();
+
+    private interface Population {
+        void replace(int session, Random random);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int carts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int replacements = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+        ProductCatalog catalog = new ProductCatalog();
+        Product[] products = CartBenchmark.products(1_000, 0, 12);
+        for (int i = 0; i < products.length; i++) {
+            products[i] = catalog.intern(products[i]);
+        }
+        listen();
+        System.out.printf("%,d carts of %d lines, %,d replacements%n", carts, lines, replacements);
+
+        run("Cart", carts, replacements, null, () -> {
+            Cart[] sessions = new Cart[carts];
+            Random random = new Random(carts);
+            for (int i = 0; i < carts; i++) {
+                sessions[i] = new Cart(catalog);
+                fill(sessions[i], products, lines, random);
+            }
+            return (session, replacementRandom) -> {
+                Cart cart = new Cart(catalog);
+                fill(cart, products, lines, replacementRandom);
+                sessions[session] = cart;
+            };
+        });
+
+        OffHeapLineStore store = new OffHeapLineStore();
+        run("OffHeapCart", carts, replacements, store, () -> {
+            OffHeapCart[] sessions = new OffHeapCart[carts];
+            Random random = new Random(carts);
+            for (int i = 0; i < carts; i++) {
+                sessions[i] = new OffHeapCart(store, catalog);
+                fill(sessions[i], products, lines, random);
+            }
+            return (session, replacementRandom) -> {
+                sessions[session].release();
+                OffHeapCart cart = new OffHeapCart(store, catalog);
+                fill(cart, products, lines, replacementRandom);
+                sessions[session] = cart;
+            };
+        });
+    }
+
+    private static void run(String name, int carts, int replacements, OffHeapLineStore store,
+                            Supplier<Population> build) {
+        long before = usedHeap();
+        Population population = build.get();
+        long retained = usedHeap() - before;
+
+        Histogram roundPauses = new Histogram();
+        pauses = roundPauses;
+        pauseMillis.set(0);
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < replacements; i++) {
+            population.replace(random.nextInt(carts), random);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pauses = new Histogram();
+        System.out.printf("%-12s heap %,8.1f MB  direct %,7.1f MB  %,9.0f replacements/s"
+                        + "  GC %,5d pauses  total %,7d ms  p99 %,5d ms  max %,5d ms%n",
+                name, retained / 1e6, store == null ? 0 : store.getReservedBytes() / 1e6, replacements / seconds,
+                roundPauses.getCount(), pauseMillis.get(),
+                roundPauses.valueAtPercentile(99), roundPauses.valueAtPercentile(100));
+        population = null;
+        usedHeap();
+    }
+
+    private static void fill(ShoppingCart cart, Product[] products, int lines, Random random) {
+        try {
+            for (int line = 0; line < lines; line++) {
+                cart.add(new Item(products[random.nextInt(products.length)], 1 + random.nextInt(3)));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Heap used after a full collection.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Records the duration in milliseconds of every collection other than the explicit ones.
+     */
+    private static void listen() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if ("System.gc()".equals(info.getGcCause())) {
+                return;
+            }
+            pauses.record(info.getGcInfo().getDuration());
+            pauseMillis.addAndGet(info.getGcInfo().getDuration());
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+}
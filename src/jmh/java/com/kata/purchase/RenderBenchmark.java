@@ -0,0 +1,61 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeated prints of an unchanged 5k-line cart, and of the same cart with one line changed between prints.
+ * Run with {@code -prof gc} to see what each print allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"5000"})
+    private int lines;
+
+    private Cart cart;
+    private Item changing;
+    private StringBuilder text;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        cart = new Cart();
+        cart.add(CartBenchmark.items(CartBenchmark.products(lines, 0, 12)));
+        changing = cart.getItems().values().iterator().next();
+        text = new StringBuilder(cart.print().length());
+        buffer = ByteBuffer.allocateDirect(cart.print().length() * 4);
+    }
+
+    @Benchmark
+    public String print() {
+        return cart.print();
+    }
+
+    @Benchmark
+    public StringBuilder printToAppendable() throws IOException {
+        text.setLength(0);
+        return cart.printTo(text);
+    }
+
+    @Benchmark
+    public ByteBuffer printToByteBuffer() {
+        buffer.clear();
+        return cart.printTo(buffer);
+    }
+
+    @Benchmark
+    public String printAfterOneChange() {
+        changing.setQuantity(changing.getQuantity() % 9 + 1);
+        return cart.print();
+    }
+}
@@ -0,0 +1,72 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing 100k carts of 10 lines against a new price table, by fork-join parallelism.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepricingBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    private int threads;
+
+    @Param({"100000"})
+    private int carts;
+
+    private List<Cart> cartList;
+    private long[] totals;
+    private ForkJoinPool pool;
+    private CartRepricer repricer;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Random random = new Random(42);
+        ProductCatalog catalog = new ProductCatalog();
+        Product[] products = CartBenchmark.products(10_000, 0, 12);
+        for (int i = 0; i < products.length; i++) {
+            products[i] = catalog.intern(products[i]);
+        }
+        cartList = new ArrayList<>(carts);
+        for (int c = 0; c < carts; c++) {
+            Cart cart = new Cart();
+            for (int l = 0; l < 10; l++) {
+                cart.add(new Item(products[random.nextInt(products.length)], 1 + random.nextInt(5)));
+            }
+            cartList.add(cart);
+        }
+        ProductCatalog priceTable = new ProductCatalog();
+        for (Product product : products) {
+            priceTable.intern(new Product.ProductBuilder(product.getId())
+                    .label(product.getLabel())
+                    .priceInCents(product.getPriceInCents() * 9 / 10)
+                    .available(product.isAvailable())
+                    .build());
+        }
+        totals = new long[carts];
+        pool = new ForkJoinPool(threads);
+        repricer = new CartRepricer(priceTable, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long price() {
+        return repricer.priceInCents(cartList, totals);
+    }
+}
@@ -0,0 +1,93 @@
+package com.kata.purchase.analytics;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+import com.kata.purchase.Product;
+import com.kata.purchase.ProductCatalog;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries over N captured cart lines (default 10M: 1M carts of 10 lines over 100k products), against
+ * the same totals computed by walking the carts' item maps with boxed prices. The carts walked are 1k
+ * distinct carts, each captured 1k times, so that the baseline fits in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AnalyticsBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int DISTINCT_CARTS = 1_000;
+    private static final int LINES_PER_CART = 10;
+
+    @Param({"10000000"})
+    private int lines;
+
+    private Cart[] carts;
+    private CartAnalytics analytics;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Random random = new Random(42);
+        Product[] products = new Product[PRODUCTS];
+        for (int p = 0; p < PRODUCTS; p++) {
+            products[p] = new Product.ProductBuilder("ID" + p)
+                    .label("LABEL" + p)
+                    .priceInCents(1 + random.nextInt(100_000))
+                    .available(true)
+                    .build();
+        }
+        carts = new Cart[DISTINCT_CARTS];
+        for (int c = 0; c < DISTINCT_CARTS; c++) {
+            carts[c] = new Cart();
+            while (carts[c].getItems().size() < LINES_PER_CART) {
+                carts[c].add(new Item(products[random.nextInt(PRODUCTS)], 1 + random.nextInt(5)));
+            }
+        }
+        CartColumns.CartColumnsBuilder builder = new CartColumns.CartColumnsBuilder(new ProductCatalog(PRODUCTS));
+        for (int c = 0; c < lines / LINES_PER_CART; c++) {
+            builder.add(carts[c % DISTINCT_CARTS], c * 1_000L);
+        }
+        analytics = new CartAnalytics(builder.build());
+    }
+
+    @Benchmark
+    public long[] quantityByProduct() {
+        return analytics.quantityByProduct();
+    }
+
+    @Benchmark
+    public int[] topTenProductsByQuantity() {
+        return CartAnalytics.top(analytics.quantityByProduct(), 10);
+    }
+
+    @Benchmark
+    public long[] revenueByProduct() {
+        return analytics.revenueByProduct();
+    }
+
+    @Benchmark
+    public long[] averageCartValueByHour() {
+        return analytics.averageCartValueByHour();
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueByProductFromItemMaps() {
+        Map<String, Double> revenue = new HashMap<>();
+        for (int c = 0; c < lines / LINES_PER_CART; c++) {
+            for (Item line : carts[c % DISTINCT_CARTS].getItems().values()) {
+                revenue.merge(line.getId(), line.getPrice() * line.getQuantity(), Double::sum);
+            }
+        }
+        return revenue;
+    }
+}
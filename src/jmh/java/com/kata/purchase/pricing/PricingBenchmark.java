@@ -0,0 +1,82 @@
+package com.kata.purchase.pricing;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+import com.kata.purchase.Product;
+import com.kata.purchase.exception.PurchaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing a cart against a plan of N active rules (per-item, multi-buy, bundles, thresholds and VAT)
+ * over 10k products, next to the plain running total.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"10000"})
+    private int rules;
+
+    @Param({"10", "100"})
+    private int lines;
+
+    private Cart cart;
+    private PricingPlan plan;
+
+    @Setup
+    public void setUp() throws PurchaseException {
+        Random random = new Random(42);
+        PricingPlan.PricingPlanBuilder builder = new PricingPlan.PricingPlanBuilder().vat(2000);
+        for (int r = 0; r < rules; r++) {
+            String productId = id(random.nextInt(PRODUCTS));
+            switch (r % 4) {
+                case 0:
+                    builder.percentOff(productId, 500 + random.nextInt(2000));
+                    break;
+                case 1:
+                    builder.amountOff(productId, 1 + random.nextInt(50));
+                    break;
+                case 2:
+                    builder.multiBuy(productId, 2, 1);
+                    break;
+                default:
+                    builder.bundle(100, productId, id(random.nextInt(PRODUCTS)));
+            }
+            if (r % 1000 == 0) {
+                builder.cartThreshold(1000L * r, r / 100);
+            }
+        }
+        plan = builder.build();
+        cart = new Cart();
+        for (int l = 0; l < lines; l++) {
+            cart.add(new Item(new Product.ProductBuilder(id(random.nextInt(PRODUCTS)))
+                    .label("LABEL" + l)
+                    .priceInCents(100 + random.nextInt(10_000))
+                    .available(true)
+                    .build(), 1 + random.nextInt(5)));
+        }
+    }
+
+    private static String id(int index) {
+        return "PRODUCT" + index;
+    }
+
+    @Benchmark
+    public long plain() {
+        return cart.priceInCents();
+    }
+
+    @Benchmark
+    public long plan() {
+        return plan.price(cart).getTotalInCents();
+    }
+}
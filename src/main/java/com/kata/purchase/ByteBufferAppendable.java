@@ -0,0 +1,80 @@
+package com.kata.purchase;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes appended characters as UTF-8 straight into a {@link ByteBuffer}, the same bytes
+ * {@code String.getBytes(UTF_8)} would produce (unpaired surrogates become '?').
+ * Throws {@link BufferOverflowException} when the buffer is full.
+ */
+public class ByteBufferAppendable implements Appendable {
+
+    private final ByteBuffer buffer;
+    private char highSurrogate;
+
+    public ByteBufferAppendable(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public ByteBufferAppendable append(CharSequence csq) {
+        return append(csq, 0, csq == null ? 4 : csq.length());
+    }
+
+    @Override
+    public ByteBufferAppendable append(CharSequence csq, int start, int end) {
+        CharSequence chars = csq == null ? "null" : csq;
+        for (int i = start; i < end; i++) {
+            append(chars.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public ByteBufferAppendable append(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer.put((byte) (0xF0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                        .put((byte) (0x80 | codePoint & 0x3F));
+                return this;
+            }
+            buffer.put((byte) '?');
+        }
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6))
+                    .put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | c >> 12))
+                    .put((byte) (0x80 | c >> 6 & 0x3F))
+                    .put((byte) (0x80 | c & 0x3F));
+        }
+        return this;
+    }
+
+    /**
+     * Writes a '?' for a high surrogate left without its low half.
+     */
+    public ByteBuffer flush() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            buffer.put((byte) '?');
+        }
+        return buffer;
+    }
+}
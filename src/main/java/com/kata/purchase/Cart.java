@@ -2,35 +2,86 @@ package com.kata.purchase;
 
 import com.kata.purchase.exception.ErrorCode;
 import com.kata.purchase.exception.PurchaseException;
-import lombok.Getter;
-import lombok.Setter;
+import com.kata.purchase.metrics.CartMetrics;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Stream;
 
+import static com.kata.purchase.Money.NO_PRICE;
 import static com.kata.purchase.exception.ErrorCode.*;
 import static java.lang.System.getProperty;
-import static java.util.Comparator.comparing;
 
-@Getter
-@Setter
-public class Cart {
+public class Cart implements ShoppingCart {
 
     public static final String LINE_SEPARATOR = getProperty("line.separator");
 
-    private Map<String, Item> items;
+    private static final CartMetrics METRICS = CartMetrics.CURRENT;
+
+    private final Map<String, Item> items;
+
+    /**
+     * Lines in {@link Item#DISPLAY_ORDER}, re-keyed on add, remove and price or label change,
+     * so printing is a walk instead of a sort.
+     */
+    private final NavigableMap<DisplayKey, Item> displayOrder;
+
+    /**
+     * {@link #displayOrder} flattened for positional access, rebuilt on first use after a change.
+     */
+    private Item[] orderedLines;
+
+    /**
+     * Running sum of quantity * price in cents over all items, each line counted at the price of its
+     * {@link DisplayKey}, kept up to date by every mutation (including the ones made directly on
+     * an attached {@link Item} or on its {@link Product}).
+     */
+    private long totalInCents;
+
+    /**
+     * Length of the last {@link #print()}, the initial capacity of the next one.
+     */
+    private int printedLength = 16;
+
+    /**
+     * When set, lines reference the catalog's shared product instead of the one they were added with.
+     */
+    private final ProductCatalog catalog;
 
     public Cart() {
+        this(null);
+    }
+
+    public Cart(ProductCatalog catalog) {
         this.items = new HashMap<>();
+        this.displayOrder = new TreeMap<>();
+        this.catalog = catalog;
+    }
+
+    public Map<String, Item> getItems() {
+        return Collections.unmodifiableMap(items);
+    }
+
+    public void setItems(Map<String, Item> items) {
+        // copied first: the argument may be a view of this.items, from getItems()
+        Map<String, Item> replacement = items == null ? Collections.emptyMap() : new LinkedHashMap<>(items);
+        this.items.values().forEach(this::detach);
+        this.items.clear();
+        replacement.forEach((productId, item) -> this.items.put(productId, attach(item)));
+        METRICS.sized(this.items.size());
     }
 
+    @Override
     public void add(Item... items) throws PurchaseException {
         if (items == null) {
             throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
         }
-
-        for (Item item : items) {
-            addOneItem(item);
+        try {
+            for (Item item : items) {
+                addOneItem(item);
+            }
+        } finally {
+            METRICS.sized(this.items.size());
         }
     }
 
@@ -39,61 +90,309 @@ public class Cart {
             throw new PurchaseException(ITEM_NOT_VALID);
         }
         String productId = item.getProduct().getId();
-        if (productExistsAlready(productId)) {
-            items.get(productId).increment();
+        Item existing = items.get(productId);
+        if (existing != null) {
+            METRICS.lineMerged();
+            existing.increment();
         } else {
-            items.put(productId, item);
+            METRICS.lineInserted();
+            items.put(productId, attach(item));
+        }
+    }
+
+    /**
+     * Adds a whole batch with the same merging rules as {@link #add(Item...)}, all or nothing:
+     * every item is validated before the cart changes, and duplicate product ids are merged
+     * first so that each distinct product is looked up and updated once.
+     */
+    public void addAll(Collection<Item> items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        addAll(items.iterator(), items.size());
+    }
+
+    /**
+     * Same as {@link #addAll(Collection)}, consuming the stream once.
+     */
+    public void addAll(Stream<Item> items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        addAll(items.iterator(), 16);
+    }
+
+    private void addAll(Iterator<Item> items, int expectedSize) throws PurchaseException {
+        Map<String, Batch> batches = new LinkedHashMap<>(expectedSize * 4 / 3 + 1);
+        while (items.hasNext()) {
+            Item item = items.next();
+            if (item == null || !item.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            Batch batch = batches.get(item.getId());
+            if (batch == null) {
+                batches.put(item.getId(), new Batch(item));
+            } else {
+                batch.repeats++;
+            }
+        }
+        for (Batch batch : batches.values()) {
+            String productId = batch.first.getId();
+            Item existing = this.items.get(productId);
+            if (existing != null) {
+                METRICS.lineMerged();
+                existing.setQuantity(existing.getQuantity() + 1 + batch.repeats);
+            } else {
+                METRICS.lineInserted();
+                Item line = attach(batch.first);
+                this.items.put(productId, line);
+                line.setQuantity(line.getQuantity() + batch.repeats);
+            }
+        }
+        METRICS.sized(this.items.size());
+    }
+
+    /**
+     * First item of a product in a batch and how many more times the product appears after it,
+     * each appearance counting for one more unit like {@link #add(Item...)} does.
+     */
+    private static final class Batch {
+        private final Item first;
+        private int repeats;
+
+        private Batch(Item first) {
+            this.first = first;
         }
     }
 
-    private boolean productExistsAlready(String productId) {
-        return items.get(productId) != null;
+    /**
+     * The item itself, or a copy when it is a line of another cart or when the catalog shares its product
+     * under another instance, so that the caller's item is never changed behind its back.
+     */
+    private Item attach(Item item) {
+        Product product = catalog == null ? item.getProduct() : catalog.intern(item.getProduct());
+        Item line = (item.getCart() == null || item.getCart() == this) && product == item.getProduct()
+                ? item : new Item(product, item.getQuantity());
+        line.setCart(this);
+        totalInCents += line.getTotalInCents();
+        index(line);
+        return line;
+    }
+
+    private void detach(Item item) {
+        totalInCents -= item.getQuantity() * priceOf(item.getDisplayKey().priceInCents);
+        unindex(item);
+        item.setCart(null);
+    }
+
+    private void index(Item line) {
+        DisplayKey key = new DisplayKey(line);
+        line.setDisplayKey(key);
+        displayOrder.put(key, line);
+        orderedLines = null;
+    }
+
+    private void unindex(Item line) {
+        displayOrder.remove(line.getDisplayKey());
+        line.setDisplayKey(null);
+        orderedLines = null;
     }
 
+    @Override
     public void removeItem(String productId) throws PurchaseException {
-        findItem(productId);
-        items.remove(productId);
+        PurchaseException.check(tryRemoveItem(productId));
     }
 
-    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
-        if (quantity < 0) {
-            throw new PurchaseException(ErrorCode.QUANTITY_SHOULD_BE_GREATER_THAN_0);
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        Item item = items.remove(productId);
+        if (item == null) {
+            return notFound();
         }
-        Item item = findItem(productId);
-        item.setQuantity(quantity);
+        detach(item);
+        METRICS.sized(items.size());
+        return null;
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
     }
 
-    private Item findItem(String productId) throws PurchaseException {
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
         Item item = items.get(productId);
         if (item == null) {
-            throw new PurchaseException(ITEM_NOT_FOUND);
+            return notFound();
         }
-        return item;
+        item.setQuantity(quantity);
+        return null;
     }
 
+    @Override
     public void incrementQuantity(String productId) throws PurchaseException {
-        Item item = findItem(productId);
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        Item item = items.get(productId);
+        if (item == null) {
+            return notFound();
+        }
         item.increment();
+        return null;
     }
 
+    @Override
     public void decrementQuantity(String productId) throws PurchaseException {
-        Item item = findItem(productId);
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        Item item = items.get(productId);
+        if (item == null) {
+            return notFound();
+        }
         item.decrement();
+        return null;
+    }
+
+    private static ErrorCode notFound() {
+        METRICS.lineNotFound();
+        return ITEM_NOT_FOUND;
+    }
+
+    void quantityChanged(Item item, int previousQuantity) {
+        totalInCents += (item.getQuantity() - (long) previousQuantity) * priceOf(item.getDisplayKey().priceInCents);
+    }
+
+    /**
+     * The item's product was replaced, or its price, label or id changed.
+     */
+    void lineChanged(Item item) {
+        DisplayKey previous = item.getDisplayKey();
+        if (!previous.isStale(item)) {
+            return;
+        }
+        totalInCents -= item.getQuantity() * priceOf(previous.priceInCents);
+        unindex(item);
+        totalInCents += item.getTotalInCents();
+        index(item);
+    }
+
+    private static long priceOf(long priceInCents) {
+        return priceInCents == NO_PRICE ? 0 : priceInCents;
+    }
+
+    /**
+     * Lines {@code fromIndex} (inclusive) to {@code toIndex} (exclusive) in display order.
+     */
+    public List<Item> getLines(int fromIndex, int toIndex) {
+        return Collections.unmodifiableList(Arrays.asList(orderedLines()).subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Every line in display order, read straight from the index without copying it.
+     */
+    Collection<Item> lines() {
+        return Collections.unmodifiableCollection(displayOrder.values());
+    }
+
+    private Item[] orderedLines() {
+        if (orderedLines == null) {
+            orderedLines = displayOrder.values().toArray(new Item[displayOrder.size()]);
+        }
+        return orderedLines;
     }
 
+    @Override
     public String print() {
-        StringBuilder sb = new StringBuilder();
-        items.values()
-                .stream()
-                .sorted(comparing(Item::getPrice).thenComparing(Item::getLabel).thenComparing(Item::getId))
-                .forEach((item) -> sb.append(item.print()).append(LINE_SEPARATOR));
-        return sb.toString();
-    }
-
-    public Double price() {
-        return items.values()
-                .stream()
-                .map((item) -> item.getQuantity() * item.getPrice())
-                .reduce(0D, (price1, price2) -> price1 + price2);
+        String printed = Printing.print(this::printTo, printedLength);
+        printedLength = printed.length() + 16;
+        return printed;
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        long start = METRICS.isEnabled() ? System.nanoTime() : 0;
+        for (Item item : displayOrder.values()) {
+            item.printTo(out).append(LINE_SEPARATOR);
+        }
+        if (METRICS.isEnabled()) {
+            METRICS.printed(System.nanoTime() - start);
+        }
+        return out;
+    }
+
+    /**
+     * Prints lines {@code fromIndex} (inclusive) to {@code toIndex} (exclusive) in display order.
+     */
+    public <A extends Appendable> A printTo(A out, int fromIndex, int toIndex) throws IOException {
+        for (Item item : getLines(fromIndex, toIndex)) {
+            item.printTo(out).append(LINE_SEPARATOR);
+        }
+        return out;
+    }
+
+    @Override
+    public double price() {
+        return Money.amount(priceInCents());
+    }
+
+    @Override
+    public long priceInCents() {
+        long start = METRICS.isEnabled() ? System.nanoTime() : 0;
+        long total = totalInCents;
+        if (METRICS.isEnabled()) {
+            METRICS.priced(System.nanoTime() - start);
+        }
+        return total;
+    }
+
+    /**
+     * Snapshot of the fields a line is displayed by, so that a later change of the product
+     * can still find the line's old position.
+     */
+    static final class DisplayKey implements Comparable<DisplayKey> {
+
+        private final long priceInCents;
+        private final String label;
+        private final String id;
+
+        DisplayKey(Item item) {
+            this.priceInCents = item.getPriceInCents();
+            this.label = item.getLabel();
+            this.id = item.getId();
+        }
+
+        @Override
+        public int compareTo(DisplayKey other) {
+            int comparison = Long.compare(priceInCents, other.priceInCents);
+            if (comparison == 0) {
+                comparison = compare(label, other.label);
+            }
+            return comparison == 0 ? compare(id, other.id) : comparison;
+        }
+
+        /**
+         * Whether the item's product no longer has the price, label or id of this key.
+         */
+        boolean isStale(Item item) {
+            return priceInCents != item.getPriceInCents()
+                    || !Objects.equals(label, item.getLabel())
+                    || !Objects.equals(id, item.getId());
+        }
+
+        private static int compare(String left, String right) {
+            if (left == null || right == null) {
+                return left == right ? 0 : left == null ? -1 : 1;
+            }
+            return left.compareTo(right);
+        }
     }
 }
@@ -0,0 +1,171 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams carts from and to CSV (RFC 4180 quoting), one line per row:
+ * <pre>
+ * id,label,price,available,quantity
+ * ID1,"Tea, green",2.5,true,3
+ * </pre>
+ * Columns are found by their header name and may come in any order; {@code id}, {@code price} and
+ * {@code quantity} are required, an empty or missing label is null and a missing {@code available} is false.
+ * Import holds one row and one batch of lines at a time, whatever the size of the input.
+ */
+public final class CartCsv {
+
+    public static final String HEADER = "id,label,price,available,quantity";
+
+    private CartCsv() {
+    }
+
+    /**
+     * Adds every row to the cart, {@code batchSize} lines at a time through {@link Cart#addAll(java.util.Collection)},
+     * so rows with the same id merge the way {@link Cart#add(Item...)} does. Rows before a failing batch stay added.
+     *
+     * @return the number of rows read
+     * @throws IllegalArgumentException when the input is not well-formed CSV or a field does not parse
+     */
+    public static long read(Reader reader, Cart cart, int batchSize) throws IOException, PurchaseException {
+        CharInput in = new CharInput(reader);
+        List<String> fields = new ArrayList<>();
+        if (!skipBlankLines(in)) {
+            return 0;
+        }
+        readRecord(in, fields);
+        int id = fields.indexOf("id");
+        int label = fields.indexOf("label");
+        int price = fields.indexOf("price");
+        int available = fields.indexOf("available");
+        int quantity = fields.indexOf("quantity");
+        if (id < 0 || price < 0 || quantity < 0) {
+            throw in.error("Header should name the id, price and quantity columns");
+        }
+        int columns = fields.size();
+        ItemBatch batch = new ItemBatch(cart, batchSize);
+        while (skipBlankLines(in)) {
+            int line = in.getLine();
+            readRecord(in, fields);
+            if (fields.size() != columns) {
+                throw new IllegalArgumentException("Expected " + columns + " fields but got " + fields.size() + " at line " + line);
+            }
+            try {
+                batch.add(fields.get(id),
+                        label < 0 || fields.get(label).isEmpty() ? null : fields.get(label),
+                        Money.parseCents(fields.get(price)),
+                        available >= 0 && Boolean.parseBoolean(fields.get(available)),
+                        Integer.parseInt(fields.get(quantity)));
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("Malformed number at line " + line, e);
+            }
+        }
+        return batch.flush();
+    }
+
+    /**
+     * Skips blank lines, false at the end of the input.
+     */
+    private static boolean skipBlankLines(CharInput in) throws IOException {
+        int c;
+        while ((c = in.peek()) == '\r' || c == '\n') {
+            in.read();
+        }
+        return c >= 0;
+    }
+
+    /**
+     * Reads the record starting at the current character into {@code fields}.
+     */
+    private static void readRecord(CharInput in, List<String> fields) throws IOException {
+        fields.clear();
+        int c;
+        StringBuilder field = new StringBuilder();
+        while (true) {
+            c = in.read();
+            if (c == '"' && field.length() == 0) {
+                readQuoted(in, field);
+                c = in.read();
+                if (c != ',' && c != '\r' && c != '\n' && c >= 0) {
+                    throw in.error("Unexpected character after quoted field");
+                }
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                fields.add(field.toString());
+                if (c == '\r' && in.peek() == '\n') {
+                    in.read();
+                }
+                return;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private static void readQuoted(CharInput in, StringBuilder field) throws IOException {
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                throw in.error("Unterminated quoted field");
+            }
+            if (c == '"') {
+                if (in.peek() != '"') {
+                    return;
+                }
+                in.read();
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Writes the header and every line in {@link Cart#print()} order.
+     */
+    public static <A extends Appendable> A write(Cart cart, A out) throws IOException {
+        out.append(HEADER).append('\n');
+        for (Item line : cart.lines()) {
+            appendField(out, line.getId()).append(',');
+            appendField(out, line.getLabel()).append(',');
+            Money.appendTo(out, line.getPriceInCents());
+            out.append(',').append(line.getProduct().isAvailable() ? "true" : "false").append(',');
+            Printing.appendNumber(out, line.getQuantity());
+            out.append('\n');
+        }
+        return out;
+    }
+
+    private static Appendable appendField(Appendable out, String value) throws IOException {
+        if (value == null) {
+            return out;
+        }
+        if (!needsQuotes(value)) {
+            return out.append(value);
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
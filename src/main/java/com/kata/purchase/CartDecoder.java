@@ -0,0 +1,190 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static com.kata.purchase.CartEncoder.AVAILABLE_FLAG;
+import static com.kata.purchase.CartEncoder.MAGIC;
+import static com.kata.purchase.CartEncoder.VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads carts written by {@link CartEncoder}. Decoded products are interned in a
+ * {@link ProductCatalog}, so every cart of a stream shares one instance per product.
+ * A decoder instance must read a single stream.
+ */
+public class CartDecoder {
+
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 20;
+
+    private final ProductCatalog catalog;
+    private final List<Product> dictionary = new ArrayList<>();
+    private byte[] scratch = new byte[64];
+
+    public CartDecoder() {
+        this(new ProductCatalog());
+    }
+
+    public CartDecoder(ProductCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the buffer does not start a cart stream of a supported version
+     */
+    public void readHeader(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a cart stream");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported cart stream version " + version);
+        }
+    }
+
+    /**
+     * Whether the buffer holds a complete cart record.
+     */
+    public boolean hasCart(ByteBuffer buffer) {
+        return hasRecord(buffer, 0);
+    }
+
+    private static boolean hasRecord(ByteBuffer buffer, int keyBytes) {
+        int header = keyBytes + Integer.BYTES;
+        return buffer.remaining() >= header && buffer.remaining() - header >= buffer.getInt(buffer.position() + keyBytes);
+    }
+
+    public Cart read(ByteBuffer buffer) {
+        buffer.getInt();
+        int lineCount = Varint.getInt(buffer);
+        List<Item> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            Product product = readProduct(buffer);
+            lines.add(new Item(product, Varint.getInt(buffer)));
+        }
+        Cart cart = new Cart();
+        try {
+            cart.addAll(lines);
+        } catch (PurchaseException e) {
+            throw new IllegalArgumentException("Corrupted cart record: " + e.getMessage(), e);
+        }
+        return cart;
+    }
+
+    private Product readProduct(ByteBuffer buffer) {
+        int slot = Varint.getInt(buffer);
+        if (slot < dictionary.size()) {
+            return dictionary.get(slot);
+        }
+        if (slot != dictionary.size()) {
+            throw new IllegalArgumentException("Unknown product slot " + slot);
+        }
+        Product product = readProductFields(buffer);
+        dictionary.add(product);
+        return product;
+    }
+
+    /**
+     * Reads a product written by {@link CartEncoder#writeProductFields}, as the catalog's shared
+     * instance unless the catalog holds a different version of it.
+     */
+    Product readProductFields(ByteBuffer buffer) {
+        Product product = new Product.ProductBuilder(readString(buffer, 0))
+                .label(readString(buffer, 1))
+                .priceInCents(Varint.getSignedLong(buffer))
+                .available((buffer.get() & AVAILABLE_FLAG) != 0)
+                .build();
+        Product shared = catalog.intern(product);
+        return shared.sameAs(product) ? shared : product;
+    }
+
+    String readString(ByteBuffer buffer, int lengthOffset) {
+        int length = Varint.getInt(buffer) - lengthOffset;
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Reads a whole stream from the channel through one reusable direct buffer.
+     *
+     * @return the number of carts read
+     */
+    public int read(ReadableByteChannel channel, Consumer<Cart> carts) throws IOException {
+        return read(channel, 0, (buffer) -> carts.accept(read(buffer)));
+    }
+
+    /**
+     * Same as {@link #read(ReadableByteChannel, Consumer)} for a keyed stream.
+     */
+    public int readKeyed(ReadableByteChannel channel, BiConsumer<Long, Cart> carts) throws IOException {
+        return read(channel, Long.BYTES, (buffer) -> {
+            long cartId = buffer.getLong();
+            carts.accept(cartId, read(buffer));
+        });
+    }
+
+    private int read(ReadableByteChannel channel, int keyBytes, Consumer<ByteBuffer> reader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+        buffer.limit(0);
+        if (!fill(buffer, channel, 5)) {
+            throw new EOFException("Missing cart stream header");
+        }
+        readHeader(buffer);
+        int header = keyBytes + Integer.BYTES;
+        int count = 0;
+        while (true) {
+            if (!hasRecord(buffer, keyBytes)) {
+                int needed = buffer.remaining() < header ? header : header + buffer.getInt(buffer.position() + keyBytes);
+                if (needed > buffer.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocateDirect(needed);
+                    larger.put(buffer);
+                    larger.flip();
+                    buffer = larger;
+                }
+                if (!fill(buffer, channel, needed)) {
+                    if (buffer.hasRemaining()) {
+                        throw new EOFException("Truncated cart record");
+                    }
+                    return count;
+                }
+            }
+            reader.accept(buffer);
+            count++;
+        }
+    }
+
+    /**
+     * Compacts the unread bytes to the start of the buffer and reads until at least
+     * {@code needed} bytes are available, false when the channel ends first.
+     */
+    private static boolean fill(ByteBuffer buffer, ReadableByteChannel channel, int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Changes turning one version of a cart into another, one entry per changed line: a new quantity,
+ * a new line (or a new version of its product), or a removed line. Deltas are computed in one pass
+ * over each cart, and can be written in a compact binary form to be shipped or persisted instead of
+ * the whole cart:
+ * <pre>
+ * delta  := count(varint) entry*
+ * entry  := REMOVE(byte) id(string)
+ *         | QUANTITY(byte) id(string) quantity(varint)
+ *         | LINE(byte) product quantity(varint)
+ * </pre>
+ * with {@code string} and {@code product} as in {@link CartEncoder}.
+ */
+public class CartDelta {
+
+    private static final byte REMOVE = 0;
+    private static final byte QUANTITY = 1;
+    private static final byte LINE = 2;
+
+    private byte[] kinds = new byte[8];
+    private String[] productIds = new String[8];
+    private Product[] products = new Product[8];
+    private int[] quantities = new int[8];
+    private int size;
+
+    /**
+     * The delta turning {@code base} into {@code target}.
+     */
+    public static CartDelta diff(Cart base, Cart target) {
+        CartDelta delta = new CartDelta();
+        Map<String, Item> baseLines = base.getItems();
+        Map<String, Item> targetLines = target.getItems();
+        for (Item line : targetLines.values()) {
+            delta.change(baseLines.get(line.getId()), line.getProduct(), line.getQuantity());
+        }
+        for (Item line : baseLines.values()) {
+            if (!targetLines.containsKey(line.getId())) {
+                delta.add(REMOVE, line.getId(), null, 0);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * The delta turning {@code into} into its merge with {@code from}: lines of only one cart are kept,
+     * lines of both get the quantity given by the policy, and the product version of {@code into}
+     * unless the policy prefers the newer line.
+     *
+     * @throws ArithmeticException when the policy adds up quantities beyond the int range
+     */
+    public static CartDelta merge(Cart into, Cart from, MergePolicy policy) {
+        CartDelta delta = new CartDelta();
+        Map<String, Item> intoLines = into.getItems();
+        for (Item line : from.getItems().values()) {
+            Item existing = intoLines.get(line.getId());
+            if (existing == null) {
+                delta.add(LINE, line.getId(), line.getProduct(), line.getQuantity());
+            } else {
+                Product product = policy == MergePolicy.PREFER_NEWER ? line.getProduct() : existing.getProduct();
+                delta.change(existing, product, policy.quantity(existing.getQuantity(), line.getQuantity()));
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Adds the entry bringing {@code existing} (null when missing) to the product and quantity, if any is needed.
+     */
+    private void change(Item existing, Product product, int quantity) {
+        if (existing == null || !sameProduct(existing.getProduct(), product)) {
+            add(LINE, product.getId(), product, quantity);
+        } else if (existing.getQuantity() != quantity) {
+            add(QUANTITY, product.getId(), null, quantity);
+        }
+    }
+
+    private static boolean sameProduct(Product left, Product right) {
+        return left == right || left.sameAs(right);
+    }
+
+    private void add(byte kind, String productId, Product product, int quantity) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            productIds = Arrays.copyOf(productIds, capacity);
+            products = Arrays.copyOf(products, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+        kinds[size] = kind;
+        productIds[size] = productId;
+        products[size] = product;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    /**
+     * Number of changed lines.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Applies every change in order. Not atomic: a change failing (e.g. an unknown line) leaves
+     * the previous ones applied.
+     */
+    public void applyTo(Cart cart) throws PurchaseException {
+        for (int i = 0; i < size; i++) {
+            switch (kinds[i]) {
+                case REMOVE:
+                    cart.removeItem(productIds[i]);
+                    break;
+                case QUANTITY:
+                    cart.updateProductQuantity(productIds[i], quantities[i]);
+                    break;
+                default:
+                    cart.tryRemoveItem(productIds[i]);
+                    cart.add(new Item(products[i], quantities[i]));
+            }
+        }
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException when the buffer is too small
+     */
+    public void writeTo(ByteBuffer buffer) {
+        Varint.putInt(buffer, size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(kinds[i]);
+            if (kinds[i] == LINE) {
+                CartEncoder.writeProductFields(products[i], buffer);
+            } else {
+                CartEncoder.writeString(productIds[i], buffer, 0);
+            }
+            if (kinds[i] != REMOVE) {
+                Varint.putInt(buffer, quantities[i]);
+            }
+        }
+    }
+
+    public static CartDelta read(ByteBuffer buffer) {
+        CartDecoder decoder = new CartDecoder();
+        CartDelta delta = new CartDelta();
+        int count = Varint.getInt(buffer);
+        for (int i = 0; i < count; i++) {
+            byte kind = buffer.get();
+            switch (kind) {
+                case REMOVE:
+                    delta.add(REMOVE, decoder.readString(buffer, 0), null, 0);
+                    break;
+                case QUANTITY:
+                    delta.add(QUANTITY, decoder.readString(buffer, 0), null, Varint.getInt(buffer));
+                    break;
+                case LINE:
+                    Product product = decoder.readProductFields(buffer);
+                    delta.add(LINE, product.getId(), product, Varint.getInt(buffer));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown cart delta entry " + kind);
+            }
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,181 @@
+package com.kata.purchase;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes carts in the compact binary format read by {@link CartDecoder}.
+ * <pre>
+ * stream  := MAGIC(int) VERSION(byte) cart*
+ * cart    := length(int, bytes that follow) lineCount(varint) line*
+ * line    := productRef(varint) [product when productRef is the next free dictionary slot] quantity(varint)
+ * product := id(string) label(string, length + 1, 0 for null) priceInCents(zigzag varint) flags(byte)
+ * string  := UTF-8 length(varint) UTF-8 bytes
+ * </pre>
+ * Each product is written once per stream and referenced by its dictionary slot afterwards,
+ * so an encoder instance must write a single stream. Keyed streams prefix every cart with its id (long).
+ */
+public class CartEncoder {
+
+    public static final int MAGIC = 0x43415254;
+    public static final byte VERSION = 1;
+
+    static final int AVAILABLE_FLAG = 1;
+
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 20;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<String, Product> definitions = new HashMap<>();
+    private int dictionarySize;
+
+    public void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).put(VERSION);
+    }
+
+    /**
+     * Appends one cart record. On {@link BufferOverflowException} the buffer position is restored
+     * and the dictionary is left as it was, so the cart can be written again into a larger buffer.
+     */
+    public void write(Cart cart, ByteBuffer buffer) {
+        int start = buffer.position();
+        int previousSize = dictionarySize;
+        try {
+            buffer.putInt(0);
+            Map<String, Item> items = cart.getItems();
+            Varint.putInt(buffer, items.size());
+            for (Item line : items.values()) {
+                writeProduct(line.getProduct(), buffer);
+                Varint.putInt(buffer, line.getQuantity());
+            }
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        } catch (BufferOverflowException e) {
+            forgetFrom(previousSize);
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends one keyed cart record, with the same overflow behaviour as {@link #write(Cart, ByteBuffer)}.
+     */
+    public void write(long cartId, Cart cart, ByteBuffer buffer) {
+        int start = buffer.position();
+        try {
+            buffer.putLong(cartId);
+            write(cart, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    private void writeProduct(Product product, ByteBuffer buffer) {
+        Integer slot = slots.get(product.getId());
+        if (slot != null && definitions.get(product.getId()).sameAs(product)) {
+            Varint.putInt(buffer, slot);
+            return;
+        }
+        slot = dictionarySize++;
+        slots.put(product.getId(), slot);
+        definitions.put(product.getId(), product);
+        Varint.putInt(buffer, slot);
+        writeProductFields(product, buffer);
+    }
+
+    static void writeProductFields(Product product, ByteBuffer buffer) {
+        writeString(product.getId(), buffer, 0);
+        writeString(product.getLabel(), buffer, 1);
+        Varint.putSignedLong(buffer, product.getPriceInCents());
+        buffer.put((byte) (product.isAvailable() ? AVAILABLE_FLAG : 0));
+    }
+
+    private void forgetFrom(int size) {
+        slots.values().removeIf((slot) -> slot >= size);
+        definitions.keySet().retainAll(slots.keySet());
+        dictionarySize = size;
+    }
+
+    /**
+     * Writes the UTF-8 length plus {@code lengthOffset} (so that 0 can stand for null), then the bytes.
+     */
+    static void writeString(String value, ByteBuffer buffer, int lengthOffset) {
+        if (value == null) {
+            Varint.putInt(buffer, 0);
+            return;
+        }
+        Varint.putInt(buffer, utf8Length(value) + lengthOffset);
+        new ByteBufferAppendable(buffer).append(value).flush();
+    }
+
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a whole stream (header and every cart) to the channel through one reusable direct buffer.
+     *
+     * @return the number of carts written
+     */
+    public int write(Iterable<Cart> carts, WritableByteChannel channel) throws IOException {
+        return write(carts, channel, this::write);
+    }
+
+    /**
+     * Same as {@link #write(Iterable, WritableByteChannel)} for a keyed stream.
+     */
+    public int writeKeyed(Map<Long, Cart> carts, WritableByteChannel channel) throws IOException {
+        return write(carts.entrySet(), channel, (entry, buffer) -> write(entry.getKey(), entry.getValue(), buffer));
+    }
+
+    private <T> int write(Iterable<T> records, WritableByteChannel channel, BiConsumer<T, ByteBuffer> writer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+        writeHeader(buffer);
+        int count = 0;
+        for (T record : records) {
+            while (true) {
+                try {
+                    writer.accept(record, buffer);
+                    break;
+                } catch (BufferOverflowException e) {
+                    if (buffer.position() == 0) {
+                        buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                    } else {
+                        drain(buffer, channel);
+                    }
+                }
+            }
+            count++;
+        }
+        drain(buffer, channel);
+        return count;
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,397 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only log of cart mutations in memory-mapped segment files, so that carts survive a restart.
+ * <p>
+ * Every mutation is a 24 bytes record:
+ * <pre>
+ * cartId(long) productSlot(int) quantity(int) op(byte) padding(3 bytes) checksum(int)
+ * </pre>
+ * Products are referenced by a slot local to the segment, defined by a {@code PRODUCT} record whose
+ * quantity field holds the length of the product fields (as written by {@link CartEncoder}) that follow it,
+ * padded to 8 bytes. Segments are self-contained and replay stops at the first zeroed or torn record.
+ * <p>
+ * Appending only writes to the mapped segment. A background thread forces dirty segments to disk every
+ * commit interval; {@link #sync()} asks for an immediate force and waits for it, and every caller waiting
+ * at that moment is released by the same force (group commit).
+ * {@link #snapshot(Map)} writes all carts with {@link CartEncoder} and deletes the segments it covers.
+ */
+public class CartJournal implements Closeable {
+
+    static final int RECORD_SIZE = 24;
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte UPDATE = 3;
+    static final byte INCREMENT = 4;
+    static final byte DECREMENT = 5;
+    static final byte PRODUCT = 6;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final ProductCatalog catalog;
+    private final int segmentSize;
+    private final long commitIntervalMillis;
+    private final Map<Long, Cart> recoveredCarts;
+    private final Thread flusher;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<String, Product> definitions = new HashMap<>();
+    private ByteBuffer payload = ByteBuffer.allocate(256);
+
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private long durablePosition;
+    private boolean syncRequested;
+    private boolean closed;
+
+    private CartJournal(Path directory, ProductCatalog catalog, int segmentSize, long commitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.catalog = catalog;
+        this.segmentSize = segmentSize;
+        this.commitIntervalMillis = commitIntervalMillis;
+        Files.createDirectories(directory);
+        this.recoveredCarts = recover();
+        openSegment(segmentIndex + 1);
+        this.durablePosition = position();
+        this.flusher = new Thread(this::flushLoop, "cart-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static CartJournal open(Path directory, ProductCatalog catalog) throws IOException {
+        return open(directory, catalog, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Replays the latest snapshot and the segments after it, then starts a new segment for appending.
+     */
+    public static CartJournal open(Path directory, ProductCatalog catalog, int segmentSize, long commitIntervalMillis) throws IOException {
+        return new CartJournal(directory, catalog, segmentSize, commitIntervalMillis);
+    }
+
+    /**
+     * Carts rebuilt when the journal was opened, by cart id.
+     */
+    public Map<Long, Cart> getRecoveredCarts() {
+        return recoveredCarts;
+    }
+
+    /**
+     * Cart writing every successful mutation to this journal.
+     */
+    public JournaledCart journaled(long cartId, Cart cart) {
+        return new JournaledCart(cartId, cart, this);
+    }
+
+    synchronized void append(long cartId, byte op, Product product, int quantity) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        int slot = product == null ? -1 : slot(product);
+        if (segment.remaining() < RECORD_SIZE) {
+            roll();
+            slot = product == null ? -1 : slot(product);
+        }
+        writeRecord(cartId, slot, quantity, op, null);
+    }
+
+    private int slot(Product product) {
+        Integer slot = slots.get(product.getId());
+        if (slot != null && definitions.get(product.getId()).sameAs(product)) {
+            return slot;
+        }
+        payload.clear();
+        while (true) {
+            try {
+                CartEncoder.writeProductFields(product, payload);
+                break;
+            } catch (BufferOverflowException e) {
+                payload = ByteBuffer.allocate(payload.capacity() * 2);
+            }
+        }
+        payload.flip();
+        int padded = (payload.remaining() + 7) & ~7;
+        if (segment.remaining() < RECORD_SIZE + padded + RECORD_SIZE) {
+            roll();
+        }
+        slot = slots.size();
+        slots.put(product.getId(), slot);
+        definitions.put(product.getId(), product);
+        writeRecord(0, slot, payload.remaining(), PRODUCT, payload);
+        segment.position(segment.position() + padded - payload.limit());
+        return slot;
+    }
+
+    private void writeRecord(long cartId, int slot, int quantity, byte op, ByteBuffer payload) {
+        segment.putLong(cartId)
+                .putInt(slot)
+                .putInt(quantity)
+                .put(op)
+                .put((byte) 0)
+                .putShort((short) 0)
+                .putInt(checksum(cartId, slot, quantity, op, payload));
+        if (payload != null) {
+            segment.put(payload);
+        }
+    }
+
+    static int checksum(long cartId, int slot, int quantity, byte op, ByteBuffer payload) {
+        int hash = (int) (cartId ^ cartId >>> 32);
+        hash = 31 * hash + slot;
+        hash = 31 * hash + quantity;
+        hash = 31 * hash + op;
+        if (payload != null) {
+            for (int i = payload.position(); i < payload.limit(); i++) {
+                hash = 31 * hash + payload.get(i);
+            }
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash | 1;
+    }
+
+    private long position() {
+        return segmentIndex * segmentSize + segment.position();
+    }
+
+    private void roll() {
+        segment.force();
+        try {
+            openSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open journal segment " + (segmentIndex + 1), e);
+        }
+        durablePosition = Math.max(durablePosition, segmentIndex * segmentSize);
+    }
+
+    private void openSegment(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), CREATE_NEW, READ, WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentIndex = index;
+        slots.clear();
+        definitions.clear();
+    }
+
+    /**
+     * Blocks until every record appended before the call is on disk.
+     */
+    public void sync() throws InterruptedIOException {
+        synchronized (this) {
+            long target = position();
+            syncRequested = true;
+            notifyAll();
+            while (durablePosition < target && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal");
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer dirty;
+            long target;
+            synchronized (this) {
+                if (!syncRequested && !closed) {
+                    try {
+                        wait(commitIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                syncRequested = false;
+                if (closed) {
+                    return;
+                }
+                target = position();
+                dirty = target > durablePosition ? segment : null;
+            }
+            if (dirty != null) {
+                dirty.force();
+                synchronized (this) {
+                    durablePosition = Math.max(durablePosition, target);
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every cart to a snapshot and deletes the segments and snapshots it makes obsolete.
+     * Mutations of journaled carts wait for the snapshot to complete.
+     */
+    public synchronized void snapshot(Map<Long, Cart> carts) throws IOException {
+        roll();
+        Path snapshot = snapshotPath(segmentIndex);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            new CartEncoder().writeKeyed(carts, channel);
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, ATOMIC_MOVE);
+        for (long index : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (index < segmentIndex) {
+                Files.delete(segmentPath(index));
+            }
+        }
+        for (long index : indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (index < segmentIndex) {
+                Files.delete(snapshotPath(index));
+            }
+        }
+    }
+
+    private Map<Long, Cart> recover() throws IOException {
+        Map<Long, Cart> carts = new HashMap<>();
+        long first = 0;
+        SortedSet<Long> snapshots = indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            first = snapshots.last();
+            try (FileChannel channel = FileChannel.open(snapshotPath(first), READ)) {
+                new CartDecoder(catalog).readKeyed(channel, carts::put);
+            }
+        }
+        segmentIndex = first;
+        for (long index : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (index >= first) {
+                replay(segmentPath(index), carts);
+            }
+            segmentIndex = Math.max(segmentIndex, index);
+        }
+        return carts;
+    }
+
+    private void replay(Path path, Map<Long, Cart> carts) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CartDecoder decoder = new CartDecoder(catalog);
+        List<Product> products = new ArrayList<>();
+        while (buffer.remaining() >= RECORD_SIZE) {
+            long cartId = buffer.getLong();
+            int slot = buffer.getInt();
+            int quantity = buffer.getInt();
+            byte op = buffer.get();
+            buffer.position(buffer.position() + 3);
+            int checksum = buffer.getInt();
+            if (op == 0) {
+                return;
+            }
+            if (op == PRODUCT) {
+                int padded = (quantity + 7) & ~7;
+                if (quantity < 0 || buffer.remaining() < padded) {
+                    return;
+                }
+                ByteBuffer fields = buffer.slice();
+                fields.limit(quantity);
+                if (checksum != checksum(cartId, slot, quantity, op, fields) || slot != products.size()) {
+                    return;
+                }
+                products.add(decoder.readProductFields(fields));
+                buffer.position(buffer.position() + padded);
+                continue;
+            }
+            if (checksum != checksum(cartId, slot, quantity, op, null) || slot >= products.size()) {
+                return;
+            }
+            apply(carts.computeIfAbsent(cartId, (id) -> new Cart()), op, products.get(slot), quantity);
+        }
+    }
+
+    private static void apply(Cart cart, byte op, Product product, int quantity) {
+        switch (op) {
+            case ADD:
+                try {
+                    cart.add(new Item(product, quantity));
+                } catch (PurchaseException e) {
+                    throw new IllegalStateException("Journaled item is not valid", e);
+                }
+                break;
+            case REMOVE:
+                cart.tryRemoveItem(product.getId());
+                break;
+            case UPDATE:
+                cart.tryUpdateProductQuantity(product.getId(), quantity);
+                break;
+            case INCREMENT:
+                cart.tryIncrementQuantity(product.getId());
+                break;
+            case DECREMENT:
+                cart.tryDecrementQuantity(product.getId());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal operation " + op);
+        }
+    }
+
+    private SortedSet<Long> indexes(String prefix, String suffix) throws IOException {
+        SortedSet<Long> indexes = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        return indexes;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long index) {
+        return directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segment.force();
+            durablePosition = position();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams carts from and to a JSON array of flat line objects:
+ * <pre>
+ * [
+ * {"id":"ID1","label":"Tea","price":2.5,"available":true,"quantity":3}
+ * ]
+ * </pre>
+ * {@code id}, {@code price} and {@code quantity} are required, other keys are optional and unknown keys
+ * with a scalar value are ignored. Import holds one object and one batch of lines at a time, whatever
+ * the size of the input.
+ */
+public final class CartJson {
+
+    private CartJson() {
+    }
+
+    /**
+     * Adds every object to the cart, {@code batchSize} lines at a time through {@link Cart#addAll(java.util.Collection)},
+     * so objects with the same id merge the way {@link Cart#add(Item...)} does. Objects before a failing batch stay added.
+     *
+     * @return the number of objects read
+     * @throws IllegalArgumentException when the input is not a well-formed array of flat objects or a field does not parse
+     */
+    public static long read(Reader reader, Cart cart, int batchSize) throws IOException, PurchaseException {
+        CharInput in = new CharInput(reader);
+        ItemBatch batch = new ItemBatch(cart, batchSize);
+        StringBuilder text = new StringBuilder();
+        expect(in, '[');
+        if (skipWhitespace(in) == ']') {
+            in.read();
+        } else {
+            int separator;
+            do {
+                readLine(in, batch, text);
+                separator = skipWhitespace(in);
+                in.read();
+            } while (separator == ',');
+            if (separator != ']') {
+                throw in.error("Expected ',' or ']'");
+            }
+        }
+        if (skipWhitespace(in) >= 0) {
+            throw in.error("Unexpected content after the array");
+        }
+        return batch.flush();
+    }
+
+    private static void readLine(CharInput in, ItemBatch batch, StringBuilder text) throws IOException, PurchaseException {
+        skipWhitespace(in);
+        int line = in.getLine();
+        String id = null;
+        String label = null;
+        String price = null;
+        String quantity = null;
+        boolean available = false;
+        expect(in, '{');
+        if (skipWhitespace(in) == '}') {
+            in.read();
+        } else {
+            int separator;
+            do {
+                skipWhitespace(in);
+                expect(in, '"');
+                String key = readString(in, text);
+                expect(in, ':');
+                String value = readValue(in, text);
+                switch (key) {
+                    case "id":
+                        id = value;
+                        break;
+                    case "label":
+                        label = value;
+                        break;
+                    case "price":
+                        price = value;
+                        break;
+                    case "available":
+                        available = "true".equals(value);
+                        break;
+                    case "quantity":
+                        quantity = value;
+                        break;
+                    default:
+                }
+                separator = skipWhitespace(in);
+                in.read();
+            } while (separator == ',');
+            if (separator != '}') {
+                throw in.error("Expected ',' or '}'");
+            }
+        }
+        if (id == null || price == null || quantity == null) {
+            throw new IllegalArgumentException("Line should have an id, a price and a quantity at line " + line);
+        }
+        try {
+            batch.add(id, label, Money.parseCents(price), available, Integer.parseInt(quantity));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Malformed number at line " + line, e);
+        }
+    }
+
+    /**
+     * A string's content, the text of a number or literal, or null for {@code null}.
+     */
+    private static String readValue(CharInput in, StringBuilder text) throws IOException {
+        int c = skipWhitespace(in);
+        if (c == '"') {
+            in.read();
+            return readString(in, text);
+        }
+        text.setLength(0);
+        while ((c = in.peek()) >= 0 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'
+                || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z'))) {
+            text.append((char) in.read());
+        }
+        String value = text.toString();
+        if (value.isEmpty()) {
+            throw in.error("Expected a string, number or literal");
+        }
+        if (Character.isLetter(value.charAt(0))) {
+            switch (value) {
+                case "null":
+                    return null;
+                case "true":
+                case "false":
+                    return value;
+                default:
+                    throw in.error("Unknown literal " + value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads up to the closing quote, the opening one already read.
+     */
+    private static String readString(CharInput in, StringBuilder text) throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = in.read();
+            if (c < 0 || c == '\n') {
+                throw in.error("Unterminated string");
+            }
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == '\\') {
+                c = in.read();
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = readHex(in);
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    default:
+                        throw in.error("Unknown escape");
+                }
+            }
+            text.append((char) c);
+        }
+    }
+
+    private static int readHex(CharInput in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(in.read(), 16);
+            if (digit < 0) {
+                throw in.error("Malformed unicode escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static void expect(CharInput in, char expected) throws IOException {
+        if (skipWhitespace(in) != expected) {
+            throw in.error("Expected '" + expected + "'");
+        }
+        in.read();
+    }
+
+    /**
+     * Skips whitespace and peeks at the next character, -1 at the end of the input.
+     */
+    private static int skipWhitespace(CharInput in) throws IOException {
+        int c;
+        while ((c = in.peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            in.read();
+        }
+        return c;
+    }
+
+    /**
+     * Writes every line in {@link Cart#print()} order, one object per line.
+     */
+    public static <A extends Appendable> A write(Cart cart, A out) throws IOException {
+        out.append('[');
+        String separator = "\n";
+        for (Item line : cart.lines()) {
+            out.append(separator).append("{\"id\":");
+            appendString(out, line.getId());
+            out.append(",\"label\":");
+            appendString(out, line.getLabel());
+            out.append(",\"price\":");
+            Money.appendTo(out, line.getPriceInCents());
+            out.append(",\"available\":").append(line.getProduct().isAvailable() ? "true" : "false");
+            out.append(",\"quantity\":");
+            Printing.appendNumber(out, line.getQuantity());
+            out.append('}');
+            separator = ",\n";
+        }
+        out.append("\n]\n");
+        return out;
+    }
+
+    private static void appendString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\r') {
+                out.append("\\r");
+            } else if (c == '\t') {
+                out.append("\\t");
+            } else if (c < 0x20) {
+                out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
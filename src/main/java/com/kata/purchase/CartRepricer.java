@@ -0,0 +1,125 @@
+package com.kata.purchase;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.kata.purchase.Money.NO_PRICE;
+
+/**
+ * Prices many carts against a price table, splitting the carts across a {@link ForkJoinPool}.
+ * The table is a {@link ProductCatalog} loaded with the new products; lines whose product is not in
+ * the table keep their current price.
+ * <p>
+ * Amounts are summed as long cents, which is exact, so parallel totals are the same as sequential
+ * ones whatever the split. A cart is only ever handled by one task, and carts must not be modified
+ * while they are priced.
+ */
+public class CartRepricer {
+
+    /**
+     * Carts below which a task stops splitting and prices them itself.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final ProductCatalog priceTable;
+    private final ForkJoinPool pool;
+
+    public CartRepricer(ProductCatalog priceTable) {
+        this(priceTable, ForkJoinPool.commonPool());
+    }
+
+    public CartRepricer(ProductCatalog priceTable, ForkJoinPool pool) {
+        this.priceTable = priceTable;
+        this.pool = pool;
+    }
+
+    /**
+     * What {@link Cart#priceInCents()} would be at the table's prices.
+     */
+    public long priceInCents(Cart cart) {
+        long total = 0;
+        for (Item line : cart.getItems().values()) {
+            long priceInCents = tablePriceInCents(line);
+            if (priceInCents != NO_PRICE) {
+                total += line.getQuantity() * priceInCents;
+            }
+        }
+        return total;
+    }
+
+    private long tablePriceInCents(Item line) {
+        Product product = priceTable.get(line.getId());
+        return product == null ? line.getPriceInCents() : product.getPriceInCents();
+    }
+
+    /**
+     * Prices every cart in parallel.
+     *
+     * @param totals receives the price of {@code carts.get(i)} at index i, may be null
+     * @return the sum over all carts
+     */
+    public long priceInCents(List<Cart> carts, long[] totals) {
+        return pool.invoke(new PriceTask(carts, totals, 0, carts.size(), false));
+    }
+
+    /**
+     * Moves every line onto the table's product in parallel, so that each cart's own total
+     * and display order follow the new prices from then on.
+     *
+     * @return the sum of the repriced carts
+     */
+    public long reprice(List<Cart> carts) {
+        return pool.invoke(new PriceTask(carts, null, 0, carts.size(), true));
+    }
+
+    private long reprice(Cart cart) {
+        for (Item line : cart.getItems().values()) {
+            Product product = priceTable.get(line.getId());
+            if (product != null) {
+                line.setProduct(product);
+            }
+        }
+        return cart.priceInCents();
+    }
+
+    private final class PriceTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Cart> carts;
+        private final long[] totals;
+        private final int from;
+        private final int to;
+        private final boolean apply;
+
+        private PriceTask(List<Cart> carts, long[] totals, int from, int to, boolean apply) {
+            this.carts = carts;
+            this.totals = totals;
+            this.from = from;
+            this.to = to;
+            this.apply = apply;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                long sum = 0;
+                for (int i = from; i < to; i++) {
+                    Cart cart = carts.get(i);
+                    long total = apply ? reprice(cart) : priceInCents(cart);
+                    if (totals != null) {
+                        totals[i] = total;
+                    }
+                    sum += total;
+                }
+                return sum;
+            }
+            int middle = (from + to) >>> 1;
+            PriceTask left = new PriceTask(carts, totals, from, middle, apply);
+            left.fork();
+            long right = new PriceTask(carts, totals, middle, to, apply).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.kata.purchase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+import static com.kata.purchase.Money.NO_PRICE;
+
+/**
+ * Immutable version of a cart's lines, stored in a persistent hash trie: a new version shares every
+ * node its change did not touch with the previous one, so it costs O(log32 n) to build, and any number
+ * of threads can read a version without locking. Products are expected to be immutable
+ * ({@link ProductCatalog} products), see {@link VersionedCart}.
+ */
+public final class CartSnapshot {
+
+    public static final CartSnapshot EMPTY = new CartSnapshot(BitmapNode.EMPTY, 0, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Comparator<Line> DISPLAY_ORDER = Printing.displayOrder(
+            (Line line) -> line.product.getPriceInCents(), (line) -> line.product.getLabel(), (line) -> line.product.getId());
+
+    private final Node root;
+    private final int size;
+    private final long totalInCents;
+
+    /**
+     * Lines in display order, computed on first print. Safe to race on since every computation gives the same lines.
+     */
+    private volatile Line[] displayOrder;
+
+    private CartSnapshot(Node root, int size, long totalInCents) {
+        this.root = root;
+        this.size = size;
+        this.totalInCents = totalInCents;
+    }
+
+    /**
+     * One line of a snapshot.
+     */
+    public static final class Line {
+        private final Product product;
+        private final int quantity;
+
+        private Line(Product product, int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getTotalInCents() {
+            long priceInCents = product.getPriceInCents();
+            return priceInCents == NO_PRICE ? 0 : quantity * priceInCents;
+        }
+
+        private String id() {
+            return product.getId();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Line get(String productId) {
+        return productId == null ? null : root.get(productId, hash(productId), 0);
+    }
+
+    /**
+     * Quantity of the product's line, -1 when the product is not in the cart.
+     */
+    public int getQuantity(String productId) {
+        Line line = get(productId);
+        return line == null ? -1 : line.quantity;
+    }
+
+    /**
+     * This version with the product's line set to {@code quantity}, added when missing.
+     */
+    public CartSnapshot with(Product product, int quantity) {
+        String productId = product.getId();
+        Line line = new Line(product, quantity);
+        Line previous = get(productId);
+        Node newRoot = root.put(line, hash(productId), 0);
+        long total = totalInCents + line.getTotalInCents() - (previous == null ? 0 : previous.getTotalInCents());
+        return new CartSnapshot(newRoot, previous == null ? size + 1 : size, total);
+    }
+
+    /**
+     * This version without the product's line, itself when the product is not in the cart.
+     */
+    public CartSnapshot without(String productId) {
+        Line previous = get(productId);
+        if (previous == null) {
+            return this;
+        }
+        Node newRoot = root.remove(productId, hash(productId), 0);
+        return new CartSnapshot(newRoot == null ? BitmapNode.EMPTY : newRoot, size - 1, totalInCents - previous.getTotalInCents());
+    }
+
+    public void forEach(Consumer<Line> action) {
+        root.forEach(action);
+    }
+
+    public double price() {
+        return Money.amount(totalInCents);
+    }
+
+    public long priceInCents() {
+        return totalInCents;
+    }
+
+    public String print() {
+        return Printing.print(this::printTo);
+    }
+
+    /**
+     * Same output as {@link Cart#printTo(Appendable)} for the same lines.
+     */
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        for (Line line : displayOrder()) {
+            Printing.appendLine(out, line.product, line.product.getPriceInCents(), line.quantity);
+            out.append(Cart.LINE_SEPARATOR);
+        }
+        return out;
+    }
+
+    private Line[] displayOrder() {
+        Line[] lines = displayOrder;
+        if (lines == null) {
+            Line[] collected = new Line[size];
+            int[] next = {0};
+            root.forEach((line) -> collected[next[0]++] = line);
+            Arrays.sort(collected, DISPLAY_ORDER);
+            displayOrder = lines = collected;
+        }
+        return lines;
+    }
+
+    private static int hash(String productId) {
+        int hash = productId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private interface Node {
+
+        Line get(String productId, int hash, int shift);
+
+        Node put(Line line, int hash, int shift);
+
+        /**
+         * @return the node without the line, null when it would be empty
+         */
+        Node remove(String productId, int hash, int shift);
+
+        void forEach(Consumer<Line> action);
+    }
+
+    /**
+     * Trie node with one slot per used 5-bit chunk of the hash at its depth, each slot holding a line or a child node.
+     */
+    private static final class BitmapNode implements Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Line get(String productId, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).get(productId, hash, shift + BITS);
+            }
+            Line line = (Line) slot;
+            return productId.equals(line.id()) ? line : null;
+        }
+
+        @Override
+        public Node put(Line line, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, copy, 0, index);
+                copy[index] = line;
+                System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).put(line, hash, shift + BITS);
+            } else if (line.id().equals(((Line) slot).id())) {
+                replacement = line;
+            } else {
+                replacement = split((Line) slot, line, hash, shift + BITS);
+            }
+            Object[] copy = slots.clone();
+            copy[index] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private static Node split(Line existing, Line line, int hash, int shift) {
+            int existingHash = hash(existing.id());
+            if (existingHash == hash) {
+                return new CollisionNode(hash, new Line[]{existing, line});
+            }
+            return BitmapNode.EMPTY.put(existing, existingHash, shift).put(line, hash, shift);
+        }
+
+        @Override
+        public Node remove(String productId, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                Node child = ((Node) slot).remove(productId, hash, shift + BITS);
+                if (child == slot) {
+                    return this;
+                }
+                replacement = child != null ? inline(child) : null;
+            } else {
+                if (!productId.equals(((Line) slot).id())) {
+                    return this;
+                }
+                replacement = null;
+            }
+            if (replacement != null) {
+                Object[] copy = slots.clone();
+                copy[index] = replacement;
+                return new BitmapNode(bitmap, copy);
+            }
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        /**
+         * A child left with a single line is replaced by that line, keeping the trie as shallow as after inserts.
+         */
+        private static Object inline(Node child) {
+            if (child instanceof BitmapNode) {
+                Object[] childSlots = ((BitmapNode) child).slots;
+                if (childSlots.length == 1 && childSlots[0] instanceof Line) {
+                    return childSlots[0];
+                }
+            } else if (((CollisionNode) child).lines.length == 1) {
+                return ((CollisionNode) child).lines[0];
+            }
+            return child;
+        }
+
+        @Override
+        public void forEach(Consumer<Line> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Node) {
+                    ((Node) slot).forEach(action);
+                } else {
+                    action.accept((Line) slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lines of different product ids with the same full hash.
+     */
+    private static final class CollisionNode implements Node {
+
+        private final int hash;
+        private final Line[] lines;
+
+        private CollisionNode(int hash, Line[] lines) {
+            this.hash = hash;
+            this.lines = lines;
+        }
+
+        private int indexOf(String productId) {
+            for (int i = 0; i < lines.length; i++) {
+                if (productId.equals(lines[i].id())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Line get(String productId, int hash, int shift) {
+            int index = indexOf(productId);
+            return index < 0 ? null : lines[index];
+        }
+
+        @Override
+        public Node put(Line line, int hash, int shift) {
+            if (hash != this.hash) {
+                return new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[]{this}).put(line, hash, shift);
+            }
+            int index = indexOf(line.id());
+            Line[] copy;
+            if (index < 0) {
+                copy = Arrays.copyOf(lines, lines.length + 1);
+                copy[lines.length] = line;
+            } else {
+                copy = lines.clone();
+                copy[index] = line;
+            }
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node remove(String productId, int hash, int shift) {
+            int index = indexOf(productId);
+            if (index < 0) {
+                return this;
+            }
+            if (lines.length == 1) {
+                return null;
+            }
+            Line[] copy = new Line[lines.length - 1];
+            System.arraycopy(lines, 0, copy, 0, index);
+            System.arraycopy(lines, index + 1, copy, index, lines.length - index - 1);
+            return new CollisionNode(this.hash, copy);
+        }
+
+        @Override
+        public void forEach(Consumer<Line> action) {
+            for (Line line : lines) {
+                action.accept(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.kata.purchase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Session carts held in memory, sharded by session id across independently locked segments.
+ * Each segment keeps its carts in access order and evicts the least recently used one beyond its share
+ * of the maximum size, and any cart idle for longer than the time to idle. The shares add up to the maximum
+ * size, so the store never holds more carts than that. Evicted carts are handed to the {@link Spill} hook,
+ * outside of the segment lock.
+ */
+public class CartStore {
+
+    /**
+     * Receives evicted carts, for example to write them to a file before they are dropped.
+     */
+    public interface Spill {
+        void spill(String sessionId, Cart cart);
+    }
+
+    private final Segment[] segments;
+    private final long timeToIdleNanos;
+    private final LongSupplier clock;
+    private final Spill spill;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private CartStore(CartStoreBuilder builder) {
+        int count = builder.segments <= 1 ? 1 : Integer.highestOneBit(builder.segments - 1) << 1;
+        if (count > builder.maximumSize) {
+            // never more segments than carts, so that each segment holds at least one
+            count = (int) Long.highestOneBit(Math.max(1, builder.maximumSize));
+        }
+        this.segments = new Segment[count];
+        long share = builder.maximumSize / count;
+        long remainder = builder.maximumSize % count;
+        for (int i = 0; i < count; i++) {
+            long segmentSize = share + (i < remainder ? 1 : 0);
+            segments[i] = new Segment((int) Math.min(Integer.MAX_VALUE, segmentSize));
+        }
+        this.timeToIdleNanos = builder.timeToIdleNanos;
+        this.clock = builder.clock;
+        this.spill = builder.spill;
+    }
+
+    public static class CartStoreBuilder {
+        private long maximumSize = Long.MAX_VALUE;
+        private long timeToIdleNanos = Long.MAX_VALUE;
+        private int segments = 64;
+        private LongSupplier clock = System::nanoTime;
+        private Spill spill = (sessionId, cart) -> {
+        };
+
+        public CartStoreBuilder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public CartStoreBuilder timeToIdle(long duration, TimeUnit unit) {
+            this.timeToIdleNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Number of lock stripes, rounded up to a power of two, and at most the largest power of two
+         * not above the maximum size.
+         */
+        public CartStoreBuilder segments(int segments) {
+            this.segments = segments;
+            return this;
+        }
+
+        public CartStoreBuilder clock(LongSupplier nanoClock) {
+            this.clock = nanoClock;
+            return this;
+        }
+
+        public CartStoreBuilder spill(Spill spill) {
+            this.spill = spill;
+            return this;
+        }
+
+        public CartStore build() {
+            return new CartStore(this);
+        }
+    }
+
+    /**
+     * The session's cart, null when it is not (or no longer) in the store.
+     */
+    public Cart get(String sessionId) {
+        return get(sessionId, false);
+    }
+
+    /**
+     * The session's cart, created empty when it is not in the store.
+     */
+    public Cart getOrCreate(String sessionId) {
+        return get(sessionId, true);
+    }
+
+    private Cart get(String sessionId, boolean create) {
+        Segment segment = segment(sessionId);
+        long now = clock.getAsLong();
+        List<Map.Entry<String, Entry>> evicted = null;
+        Cart cart;
+        segment.lock.lock();
+        try {
+            Entry entry = segment.carts.get(sessionId);
+            if (entry != null && expired(entry, now)) {
+                segment.carts.remove(sessionId);
+                evicted = new ArrayList<>(1);
+                evicted.add(new LinkedHashMap.SimpleEntry<>(sessionId, entry));
+                entry = null;
+            }
+            if (entry != null) {
+                hits.increment();
+                entry.lastAccess = now;
+                cart = entry.cart;
+            } else {
+                misses.increment();
+                cart = create ? new Cart() : null;
+                if (create) {
+                    evicted = segment.put(sessionId, new Entry(cart, now), evicted);
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        spill(evicted);
+        return cart;
+    }
+
+    public void put(String sessionId, Cart cart) {
+        Segment segment = segment(sessionId);
+        List<Map.Entry<String, Entry>> evicted;
+        segment.lock.lock();
+        try {
+            evicted = segment.put(sessionId, new Entry(cart, clock.getAsLong()), null);
+        } finally {
+            segment.lock.unlock();
+        }
+        spill(evicted);
+    }
+
+    /**
+     * Removes the session's cart without spilling it, for example once it has been checked out.
+     */
+    public Cart remove(String sessionId) {
+        Segment segment = segment(sessionId);
+        segment.lock.lock();
+        try {
+            Entry entry = segment.carts.remove(sessionId);
+            return entry == null ? null : entry.cart;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts every cart idle for longer than the time to idle, one segment at a time.
+     *
+     * @return the number of evicted carts
+     */
+    public int evictExpired() {
+        int count = 0;
+        for (Segment segment : segments) {
+            List<Map.Entry<String, Entry>> evicted = null;
+            long now = clock.getAsLong();
+            segment.lock.lock();
+            try {
+                Iterator<Map.Entry<String, Entry>> entries = segment.carts.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<String, Entry> next = entries.next();
+                    if (!expired(next.getValue(), now)) {
+                        break;
+                    }
+                    entries.remove();
+                    evicted = evicted == null ? new ArrayList<>() : evicted;
+                    evicted.add(next);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+            count += evicted == null ? 0 : evicted.size();
+            spill(evicted);
+        }
+        return count;
+    }
+
+    private boolean expired(Entry entry, long now) {
+        return now - entry.lastAccess > timeToIdleNanos;
+    }
+
+    private void spill(List<Map.Entry<String, Entry>> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (Map.Entry<String, Entry> entry : evicted) {
+            evictions.increment();
+            spill.spill(entry.getKey(), entry.getValue().cart);
+        }
+    }
+
+    private Segment segment(String sessionId) {
+        int hash = sessionId.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.carts.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+        private final Cart cart;
+        private long lastAccess;
+
+        private Entry(Cart cart, long lastAccess) {
+            this.cart = cart;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> carts = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maximumSize;
+
+        private Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        /**
+         * Puts the entry and removes the least recently used ones beyond the segment size,
+         * adding them to {@code evicted}, with the session's previous cart when it is replaced by another one.
+         * Must hold the lock.
+         */
+        private List<Map.Entry<String, Entry>> put(String sessionId, Entry entry, List<Map.Entry<String, Entry>> evicted) {
+            Entry replaced = carts.put(sessionId, entry);
+            if (replaced != null && replaced.cart != entry.cart) {
+                evicted = evicted == null ? new ArrayList<>() : evicted;
+                evicted.add(new LinkedHashMap.SimpleEntry<>(sessionId, replaced));
+            }
+            Iterator<Map.Entry<String, Entry>> eldest = carts.entrySet().iterator();
+            while (carts.size() > maximumSize) {
+                Map.Entry<String, Entry> next = eldest.next();
+                eldest.remove();
+                evicted = evicted == null ? new ArrayList<>() : evicted;
+                evicted.add(next);
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.kata.purchase;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Character source over a reader through one fixed buffer, so parsing holds a bounded amount of input
+ * whatever its size. Counts lines for error messages.
+ */
+final class CharInput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    CharInput(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * The next character without consuming it, -1 at the end of the input.
+     */
+    int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+            if (c == '\n') {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at line " + line);
+    }
+}
@@ -0,0 +1,344 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Asynchronous checkout of carts through four stages: validate (every line valid and available),
+ * reserve (every line's units held in the {@link Inventory}, skipped without one), price and render.
+ * Each stage is a fixed number of worker threads draining a bounded queue in batches and handing
+ * checkouts to the next stage's queue, so any number of checkouts in flight share the same few threads,
+ * and a full queue makes {@link #checkout(Cart)} wait instead of piling up work.
+ * <p>
+ * A cart handed to the pipeline must not change until its checkout completes. Callbacks chained on the
+ * returned future without an executor run on the render worker, and should not block.
+ */
+public class CheckoutPipeline implements AutoCloseable {
+
+    /**
+     * What a successful checkout sold: its cart, total and rendered lines.
+     */
+    public static final class Receipt {
+
+        private final Cart cart;
+        private final long totalInCents;
+        private final String text;
+
+        private Receipt(Cart cart, long totalInCents, String text) {
+            this.cart = cart;
+            this.totalInCents = totalInCents;
+            this.text = text;
+        }
+
+        public Cart getCart() {
+            return cart;
+        }
+
+        public long getTotalInCents() {
+            return totalInCents;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private interface Step {
+        void run(Checkout checkout) throws PurchaseException;
+    }
+
+    private final Inventory inventory;
+    private final List<Stage> stages = new ArrayList<>();
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private CheckoutPipeline(CheckoutPipelineBuilder builder) {
+        this.inventory = builder.inventory;
+        addStage("validate", CheckoutPipeline::validate, builder);
+        if (inventory != null) {
+            addStage("reserve", this::reserve, builder);
+        }
+        addStage("price", (checkout) -> checkout.totalInCents = checkout.cart.priceInCents(), builder);
+        addStage("render", (checkout) -> checkout.text = checkout.cart.print(), builder);
+        for (Stage stage : stages) {
+            stage.start();
+        }
+    }
+
+    public static class CheckoutPipelineBuilder {
+        private Inventory inventory;
+        private int workers = 1;
+        private int queueCapacity = 1024;
+        private int batchSize = 64;
+
+        public CheckoutPipelineBuilder inventory(Inventory inventory) {
+            this.inventory = inventory;
+            return this;
+        }
+
+        /**
+         * Threads per stage.
+         */
+        public CheckoutPipelineBuilder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Checkouts waiting in front of each stage before submitters (or the previous stage) wait.
+         */
+        public CheckoutPipelineBuilder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Most checkouts a worker takes from its queue at once.
+         */
+        public CheckoutPipelineBuilder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public CheckoutPipeline build() {
+            if (workers < 1 || queueCapacity < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("Workers, queue capacity and batch size should be greater than 0");
+            }
+            return new CheckoutPipeline(this);
+        }
+    }
+
+    private void addStage(String name, Step step, CheckoutPipelineBuilder builder) {
+        Stage previous = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+        Stage stage = new Stage(name, step, builder,
+                previous == null ? () -> closed && submitting.get() == 0 : () -> previous.live.get() == 0);
+        if (previous != null) {
+            previous.next = stage;
+        }
+        stages.add(stage);
+    }
+
+    /**
+     * Queues the cart for checkout, waiting while the first stage is full.
+     *
+     * @return the receipt, or the {@link PurchaseException} of the failing stage
+     * ({@link com.kata.purchase.exception.ErrorCode#OUT_OF_STOCK} for a line not available, not reservable
+     * or whose reservation expired before the checkout completed),
+     * or a {@link RejectedExecutionException} once the pipeline is closed
+     */
+    public CompletableFuture<Receipt> checkout(Cart cart) {
+        Checkout checkout = new Checkout(cart, inventory);
+        submitting.incrementAndGet();
+        try {
+            if (closed) {
+                checkout.result.completeExceptionally(new RejectedExecutionException("Checkout pipeline is closed"));
+            } else {
+                stages.get(0).queue.put(checkout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            checkout.result.completeExceptionally(e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+        return checkout.result;
+    }
+
+    /**
+     * Stops taking checkouts, then waits for the ones already queued to complete. Interrupted while waiting,
+     * it returns at once with the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            for (Stage stage : stages) {
+                stage.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void validate(Checkout checkout) throws PurchaseException {
+        if (checkout.cart == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        for (Item line : checkout.cart.getItems().values()) {
+            if (!line.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            if (!line.getProduct().isAvailable()) {
+                throw new PurchaseException(OUT_OF_STOCK);
+            }
+        }
+    }
+
+    private void reserve(Checkout checkout) throws PurchaseException {
+        checkout.reservations = new ArrayList<>(checkout.cart.getItems().size());
+        for (Item line : checkout.cart.getItems().values()) {
+            Inventory.Reservation reservation = inventory.reservation(line.getId());
+            if (!reservation.hold(line.getQuantity())) {
+                throw new PurchaseException(OUT_OF_STOCK);
+            }
+            checkout.reservations.add(reservation);
+        }
+    }
+
+    /**
+     * One cart on its way through the stages, handed from one worker to the next through the stage queues.
+     */
+    private static final class Checkout {
+
+        private final Cart cart;
+        private final Inventory inventory;
+        private final CompletableFuture<Receipt> result = new CompletableFuture<>();
+        private List<Inventory.Reservation> reservations;
+        private long totalInCents;
+        private String text;
+
+        private Checkout(Cart cart, Inventory inventory) {
+            this.cart = cart;
+            this.inventory = inventory;
+        }
+
+        /**
+         * Sells the units held and completes with the receipt, or fails with
+         * {@link com.kata.purchase.exception.ErrorCode#OUT_OF_STOCK} when a reservation expired meanwhile.
+         * Units sold for a checkout nobody can complete anymore go back to the stock.
+         */
+        private void complete() {
+            if (result.isCancelled()) {
+                fail(new CancellationException());
+                return;
+            }
+            int[] sold = reservations == null ? new int[0] : new int[reservations.size()];
+            for (int i = 0; i < sold.length; i++) {
+                Inventory.Reservation reservation = reservations.get(i);
+                sold[i] = reservation.getUnits();
+                if (!reservation.commit()) {
+                    giveBack(sold, i);
+                    reservations = reservations.subList(i + 1, sold.length);
+                    fail(new PurchaseException(OUT_OF_STOCK));
+                    return;
+                }
+            }
+            if (!result.complete(new Receipt(cart, totalInCents, text))) {
+                giveBack(sold, sold.length);
+            }
+        }
+
+        private void giveBack(int[] sold, int count) {
+            for (int i = 0; i < count; i++) {
+                inventory.restock(reservations.get(i).getProductId(), sold[i]);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if (reservations != null) {
+                reservations.forEach(Inventory.Reservation::release);
+            }
+            result.completeExceptionally(cause);
+        }
+    }
+
+    private static final class Stage {
+
+        private static final long IDLE_POLL_MILLIS = 10;
+
+        private final String name;
+        private final Step step;
+        private final BlockingQueue<Checkout> queue;
+        private final int batchSize;
+        private final BooleanSupplier upstreamDone;
+        private final Thread[] workers;
+        private final AtomicInteger live;
+        private Stage next;
+
+        private Stage(String name, Step step, CheckoutPipelineBuilder builder, BooleanSupplier upstreamDone) {
+            this.name = name;
+            this.step = step;
+            this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+            this.batchSize = builder.batchSize;
+            this.upstreamDone = upstreamDone;
+            this.workers = new Thread[builder.workers];
+            this.live = new AtomicInteger(workers.length);
+        }
+
+        private void start() {
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread(this::work, "checkout-" + name + "-" + (i + 1));
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+        }
+
+        private void join() throws InterruptedException {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        /**
+         * Runs batches until the queue is empty and no upstream stage (or submitter) can add to it anymore.
+         */
+        private void work() {
+            List<Checkout> batch = new ArrayList<>(batchSize);
+            int done = 0;
+            try {
+                while (true) {
+                    Checkout first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (upstreamDone.getAsBoolean() && queue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    for (done = 0; done < batch.size(); done++) {
+                        run(batch.get(done));
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                for (int i = done; i < batch.size(); i++) {
+                    batch.get(i).fail(e);
+                }
+                Thread.currentThread().interrupt();
+            } finally {
+                live.decrementAndGet();
+            }
+        }
+
+        private void run(Checkout checkout) throws InterruptedException {
+            if (checkout.result.isCancelled()) {
+                checkout.fail(new CancellationException());
+                return;
+            }
+            try {
+                step.run(checkout);
+            } catch (PurchaseException | RuntimeException e) {
+                checkout.fail(e);
+                return;
+            }
+            if (next == null) {
+                checkout.complete();
+            } else {
+                next.queue.put(checkout);
+            }
+        }
+    }
+}
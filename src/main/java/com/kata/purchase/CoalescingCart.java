@@ -0,0 +1,297 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Front of a cart buffering increments, decrements and quantity updates per product, and writing each
+ * product's net change as one {@link ShoppingCart#tryUpdateProductQuantity(String, int)}: a storm of
+ * clicks on one line costs one lookup, one lock and one journal entry in the wrapped layers instead of one each.
+ * <p>
+ * Buffered operations are validated right away, so they return the same error codes as the cart
+ * ({@link ErrorCode#ITEM_NOT_FOUND}, {@link ErrorCode#QUANTITY_SHOULD_BE_GREATER_THAN_0}), and their net
+ * effect is the one of applying them in order, a decrement never going below 0. Pending operations are
+ * written once the window since the first of them elapsed or the maximum is reached (checked on every
+ * operation, there is no timer: call {@link #flush()} to bound the delay of an idle cart), and before any
+ * other operation, so reads always see them.
+ * <p>
+ * Safe for concurrent callers. The cart must only be changed through this front.
+ */
+public class CoalescingCart implements ShoppingCart {
+
+    private final Cart cart;
+    private final ShoppingCart target;
+    private final int maximumPendingOps;
+    private final long windowNanos;
+    private final LongSupplier clock;
+
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private int pendingOps;
+    private long windowStart;
+
+    private final LongAdder bufferedOps = new LongAdder();
+    private final LongAdder writtenUpdates = new LongAdder();
+    private final LongAdder failedUpdates = new LongAdder();
+
+    private CoalescingCart(CoalescingCartBuilder builder) {
+        this.cart = builder.cart;
+        this.target = builder.target == null ? builder.cart : builder.target;
+        this.maximumPendingOps = builder.maximumPendingOps;
+        this.windowNanos = builder.windowNanos;
+        this.clock = builder.clock;
+    }
+
+    public static class CoalescingCartBuilder {
+        private final Cart cart;
+        private ShoppingCart target;
+        private int maximumPendingOps = 64;
+        private long windowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private LongSupplier clock = System::nanoTime;
+
+        /**
+         * @param cart the cart whose lines are read to turn relative changes into quantities
+         */
+        public CoalescingCartBuilder(Cart cart) {
+            this.cart = cart;
+        }
+
+        /**
+         * Layer receiving every operation instead of the cart itself, for example a {@link JournaledCart}
+         * or a {@link SynchronizedCart} around the same cart.
+         */
+        public CoalescingCartBuilder writeThrough(ShoppingCart target) {
+            this.target = target;
+            return this;
+        }
+
+        /**
+         * Pending operations, over all products, that trigger a write.
+         */
+        public CoalescingCartBuilder maximumPendingOps(int maximumPendingOps) {
+            this.maximumPendingOps = maximumPendingOps;
+            return this;
+        }
+
+        public CoalescingCartBuilder window(long duration, TimeUnit unit) {
+            this.windowNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public CoalescingCartBuilder clock(LongSupplier nanoClock) {
+            this.clock = nanoClock;
+            return this;
+        }
+
+        public CoalescingCart build() {
+            return new CoalescingCart(this);
+        }
+    }
+
+    /**
+     * Net change of one line: either {@code quantity + delta} never below {@code floor},
+     * or, once a quantity was set, the {@code absolute} quantity.
+     */
+    private static final class Pending {
+        private boolean set;
+        private long absolute;
+        private long delta;
+        private long floor = Long.MIN_VALUE;
+
+        private void increment() {
+            if (set) {
+                absolute++;
+            } else {
+                delta++;
+                floor = floor == Long.MIN_VALUE ? floor : floor + 1;
+            }
+        }
+
+        private void decrement() {
+            if (set) {
+                absolute = Math.max(0, absolute - 1);
+            } else {
+                delta--;
+                floor = floor == Long.MIN_VALUE ? 0 : Math.max(0, floor - 1);
+            }
+        }
+
+        private void set(int quantity) {
+            set = true;
+            absolute = quantity;
+        }
+
+        private int applyTo(int quantity) {
+            return (int) (set ? absolute : Math.max(floor, quantity + delta));
+        }
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        return buffer(productId, 1, 0);
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        return buffer(productId, -1, 0);
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        return buffer(productId, 0, quantity);
+    }
+
+    /**
+     * Buffers an increment (1), a decrement (-1) or setting the quantity (0).
+     */
+    private synchronized ErrorCode buffer(String productId, int direction, int quantity) {
+        long now = clock.getAsLong();
+        Pending line = pending.get(productId);
+        if (line == null) {
+            if (!cart.getItems().containsKey(productId)) {
+                return ITEM_NOT_FOUND;
+            }
+            if (pending.isEmpty()) {
+                windowStart = now;
+            }
+            line = new Pending();
+            pending.put(productId, line);
+        }
+        if (direction > 0) {
+            line.increment();
+        } else if (direction < 0) {
+            line.decrement();
+        } else {
+            line.set(quantity);
+        }
+        bufferedOps.increment();
+        if (++pendingOps >= maximumPendingOps || now - windowStart >= windowNanos) {
+            flush();
+        }
+        return null;
+    }
+
+    /**
+     * Writes the net change of every line with pending operations.
+     *
+     * @return the first error code returned by the wrapped cart, null when every write succeeded
+     */
+    public synchronized ErrorCode flush() {
+        ErrorCode first = null;
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Item line = cart.getItems().get(entry.getKey());
+            if (line == null) {
+                continue;
+            }
+            int quantity = entry.getValue().applyTo(line.getQuantity());
+            if (quantity == line.getQuantity()) {
+                continue;
+            }
+            writtenUpdates.increment();
+            ErrorCode code = target.tryUpdateProductQuantity(entry.getKey(), quantity);
+            if (code != null) {
+                failedUpdates.increment();
+                first = first == null ? code : first;
+            }
+        }
+        pending.clear();
+        pendingOps = 0;
+        return first;
+    }
+
+    /**
+     * Increments, decrements and updates accepted.
+     */
+    public long getBufferedOps() {
+        return bufferedOps.sum();
+    }
+
+    /**
+     * Quantity updates written to the cart for them.
+     */
+    public long getWrittenUpdates() {
+        return writtenUpdates.sum();
+    }
+
+    /**
+     * Operations that did not cost a write of their own: merged into another one of the same line, or cancelled out.
+     */
+    public long getCoalescedOps() {
+        return getBufferedOps() - getWrittenUpdates();
+    }
+
+    /**
+     * Writes the wrapped cart refused, for example for lack of stock. {@link #flush()} returns their code
+     * when called explicitly.
+     */
+    public long getFailedUpdates() {
+        return failedUpdates.sum();
+    }
+
+    @Override
+    public synchronized void add(Item... items) throws PurchaseException {
+        flush();
+        target.add(items);
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public synchronized ErrorCode tryRemoveItem(String productId) {
+        flush();
+        return target.tryRemoveItem(productId);
+    }
+
+    @Override
+    public synchronized String print() {
+        flush();
+        return target.print();
+    }
+
+    @Override
+    public synchronized <A extends Appendable> A printTo(A out) throws IOException {
+        flush();
+        return target.printTo(out);
+    }
+
+    @Override
+    public synchronized double price() {
+        flush();
+        return target.price();
+    }
+
+    @Override
+    public synchronized long priceInCents() {
+        flush();
+        return target.priceInCents();
+    }
+}
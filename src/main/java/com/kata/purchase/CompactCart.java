@@ -0,0 +1,311 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.kata.purchase.Money.NO_PRICE;
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Cart storing its lines in one open-addressing table of parallel arrays (product, id, id hash, quantity,
+ * unit price in cents) instead of a map of {@link Item}s, for very large carts and for jobs building many short-lived
+ * carts. Behaves like {@link Cart}: adding a product already in the cart adds one unit, and unknown ids
+ * give {@link ErrorCode#ITEM_NOT_FOUND}.
+ * <p>
+ * Lines are not attached to their product: a line keeps the id and price its product had when it was added,
+ * and prints that price with the product's label and availability.
+ */
+public class CompactCart implements ShoppingCart {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private Product[] products;
+
+    /**
+     * Id of each slot's product when it was added, so that a later change of the product's id cannot lose its line.
+     */
+    private String[] ids;
+
+    /**
+     * Hash of each slot's product id, compared before the id itself so that probing rarely leaves the arrays.
+     */
+    private int[] hashes;
+    private int[] quantities;
+    private long[] prices;
+    private int size;
+    private long totalInCents;
+
+    /**
+     * Occupied slots in {@link Item#DISPLAY_ORDER}, rebuilt on first print after a line is added or removed.
+     */
+    private int[] displayOrder;
+
+    public CompactCart() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedLines number of lines the cart can hold without resizing
+     */
+    public CompactCart(int expectedLines) {
+        allocate(tableSizeFor(expectedLines));
+    }
+
+    private static int tableSizeFor(int lines) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < lines) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        products = new Product[capacity];
+        ids = new String[capacity];
+        hashes = new int[capacity];
+        quantities = new int[capacity];
+        prices = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Quantity of the product's line, -1 when the product is not in the cart.
+     */
+    public int getQuantity(String productId) {
+        int slot = find(productId);
+        return slot < 0 ? -1 : quantities[slot];
+    }
+
+    @Override
+    public void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        for (Item item : items) {
+            if (item == null || !item.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            Product product = item.getProduct();
+            String productId = product.getId();
+            int slot = find(productId);
+            if (slot >= 0) {
+                setQuantity(slot, quantities[slot] + 1);
+            } else {
+                insert(-slot - 1, product, productId, item.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Slot holding the product id, or {@code -(free slot) - 1} where it would be inserted.
+     */
+    private int find(String productId) {
+        if (productId == null) {
+            return -1;
+        }
+        int hash = hash(productId);
+        int mask = products.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String id = ids[slot];
+            if (id == null) {
+                return -slot - 1;
+            }
+            if (hashes[slot] == hash && productId.equals(id)) {
+                return slot;
+            }
+        }
+    }
+
+    private static int hash(String productId) {
+        int hash = productId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void insert(int slot, Product product, String productId, int quantity) {
+        products[slot] = product;
+        ids[slot] = productId;
+        hashes[slot] = hash(productId);
+        quantities[slot] = quantity;
+        prices[slot] = product.getPriceInCents();
+        totalInCents += lineTotal(slot);
+        displayOrder = null;
+        if (++size > products.length * 3 / 4) {
+            resize(products.length << 1);
+        }
+    }
+
+    private void resize(int capacity) {
+        Product[] oldProducts = products;
+        String[] oldIds = ids;
+        int[] oldHashes = hashes;
+        int[] oldQuantities = quantities;
+        long[] oldPrices = prices;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldProducts.length; i++) {
+            if (oldProducts[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (products[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                products[slot] = oldProducts[i];
+                ids[slot] = oldIds[i];
+                hashes[slot] = oldHashes[i];
+                quantities[slot] = oldQuantities[i];
+                prices[slot] = oldPrices[i];
+            }
+        }
+    }
+
+    /**
+     * Empties the slot, then moves back the following lines of its probe run that could live there,
+     * so that lookups never need tombstones.
+     */
+    private void delete(int slot) {
+        totalInCents -= lineTotal(slot);
+        int mask = products.length - 1;
+        int free = slot;
+        for (int next = (slot + 1) & mask; products[next] != null; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                products[free] = products[next];
+                ids[free] = ids[next];
+                hashes[free] = hashes[next];
+                quantities[free] = quantities[next];
+                prices[free] = prices[next];
+                free = next;
+            }
+        }
+        products[free] = null;
+        ids[free] = null;
+        hashes[free] = 0;
+        quantities[free] = 0;
+        prices[free] = 0;
+        size--;
+        displayOrder = null;
+    }
+
+    private long lineTotal(int slot) {
+        return prices[slot] == NO_PRICE ? 0 : quantities[slot] * prices[slot];
+    }
+
+    private void setQuantity(int slot, int quantity) {
+        totalInCents -= lineTotal(slot);
+        quantities[slot] = quantity;
+        totalInCents += lineTotal(slot);
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        int slot = find(productId);
+        if (slot < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        delete(slot);
+        return null;
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        int slot = find(productId);
+        if (slot < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        setQuantity(slot, quantity);
+        return null;
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        int slot = find(productId);
+        if (slot < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        setQuantity(slot, quantities[slot] + 1);
+        return null;
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        int slot = find(productId);
+        if (slot < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        if (quantities[slot] > 0) {
+            setQuantity(slot, quantities[slot] - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public String print() {
+        return Printing.print(this::printTo);
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        for (int slot : displayOrder()) {
+            Printing.appendLine(out, products[slot], prices[slot], quantities[slot]);
+            out.append(Cart.LINE_SEPARATOR);
+        }
+        return out;
+    }
+
+    private int[] displayOrder() {
+        if (displayOrder == null) {
+            Integer[] slots = new Integer[size];
+            int next = 0;
+            for (int slot = 0; slot < products.length; slot++) {
+                if (products[slot] != null) {
+                    slots[next++] = slot;
+                }
+            }
+            Arrays.sort(slots, Printing.displayOrder((Integer slot) -> prices[slot],
+                    (slot) -> products[slot].getLabel(), (slot) -> ids[slot]));
+            displayOrder = new int[size];
+            for (int i = 0; i < size; i++) {
+                displayOrder[i] = slots[i];
+            }
+        }
+        return displayOrder;
+    }
+
+    @Override
+    public double price() {
+        return Money.amount(totalInCents);
+    }
+
+    @Override
+    public long priceInCents() {
+        return totalInCents;
+    }
+}
@@ -0,0 +1,284 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import com.kata.purchase.metrics.CartMetrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.kata.purchase.Cart.LINE_SEPARATOR;
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Cart shared by several sessions. Each line is updated atomically under the lock of the stripe its
+ * product id hashes to, so writers on different products rarely block each other. Readers needing the
+ * lines ({@link #print()}, {@link #getItems()}) take every stripe to see a consistent snapshot, while
+ * {@link #price()} reads the running total without locking. Added items are copied, the cart never
+ * shares its lines with callers.
+ * <p>
+ * A line keeps the price its product had when it was added, and prints that price with the product's
+ * label and availability, so that {@link #print()} always agrees with {@link #price()}.
+ */
+public class ConcurrentCart implements ShoppingCart {
+
+    private static final int STRIPES = 16;
+
+    private static final CartMetrics METRICS = CartMetrics.CURRENT;
+
+    private static final Comparator<Line> DISPLAY_ORDER = Printing.displayOrder(
+            (Line line) -> line.priceInCents, (line) -> line.product.getLabel(), (line) -> line.product.getId());
+
+    private final ConcurrentHashMap<String, Line> items = new ConcurrentHashMap<>();
+
+    /**
+     * Sum of every line's quantity * stored price. Each change adds its difference in one step,
+     * so a sum read without the locks is the total after some of the concurrent changes.
+     */
+    private final LongAdder totalInCents = new LongAdder();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public ConcurrentCart() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+
+        try {
+            for (Item item : items) {
+                addOneItem(item);
+            }
+        } finally {
+            METRICS.sized(this.items.size());
+        }
+    }
+
+    private void addOneItem(Item item) throws PurchaseException {
+        if (item == null || !item.isValid()) {
+            throw new PurchaseException(ITEM_NOT_VALID);
+        }
+        ReentrantLock stripe = stripe(item.getId());
+        stripe.lock();
+        try {
+            Line line = items.get(item.getId());
+            if (line == null) {
+                METRICS.lineInserted();
+                line = new Line(item.getProduct(), item.getQuantity());
+                items.put(item.getId(), line);
+                totalInCents.add(line.totalInCents());
+            } else {
+                METRICS.lineMerged();
+                line.quantity++;
+                totalInCents.add(line.priceInCents);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        if (productId == null) {
+            return notFound();
+        }
+        ReentrantLock stripe = stripe(productId);
+        stripe.lock();
+        try {
+            Line removed = items.remove(productId);
+            if (removed == null) {
+                return notFound();
+            }
+            totalInCents.add(-removed.totalInCents());
+            METRICS.sized(items.size());
+            return null;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        return updateLine(productId, quantity, 0);
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        return updateLine(productId, -1, 1);
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        return updateLine(productId, -1, -1);
+    }
+
+    /**
+     * Sets the line quantity when {@code quantity} is not negative, otherwise applies {@code delta}
+     * (never going below 0, like {@link Item#decrement()}).
+     */
+    private ErrorCode updateLine(String productId, int quantity, int delta) {
+        if (productId == null) {
+            return notFound();
+        }
+        ReentrantLock stripe = stripe(productId);
+        stripe.lock();
+        try {
+            Line line = items.get(productId);
+            if (line == null) {
+                return notFound();
+            }
+            long previousTotal = line.totalInCents();
+            if (quantity >= 0) {
+                line.quantity = quantity;
+            } else if (delta > 0 || line.quantity > 0) {
+                line.quantity += delta;
+            }
+            totalInCents.add(line.totalInCents() - previousTotal);
+            return null;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private static ErrorCode notFound() {
+        METRICS.lineNotFound();
+        return ITEM_NOT_FOUND;
+    }
+
+    /**
+     * Copies of the current lines, keyed by product id.
+     */
+    public Map<String, Item> getItems() {
+        lockAll();
+        try {
+            Map<String, Item> copy = new HashMap<>(items.size());
+            items.forEach((productId, line) -> copy.put(productId, new Item(line.product, line.quantity)));
+            return copy;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public String print() {
+        return Printing.print(this::printTo);
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        long start = METRICS.isEnabled() ? System.nanoTime() : 0;
+        Line[] lines;
+        lockAll();
+        try {
+            lines = items.values().stream().map(Line::new).toArray(Line[]::new);
+        } finally {
+            unlockAll();
+        }
+        Arrays.sort(lines, DISPLAY_ORDER);
+        for (Line line : lines) {
+            Printing.appendLine(out, line.product, line.priceInCents, line.quantity);
+            out.append(LINE_SEPARATOR);
+        }
+        if (METRICS.isEnabled()) {
+            METRICS.printed(System.nanoTime() - start);
+        }
+        return out;
+    }
+
+    @Override
+    public double price() {
+        return Money.amount(priceInCents());
+    }
+
+    @Override
+    public long priceInCents() {
+        long start = METRICS.isEnabled() ? System.nanoTime() : 0;
+        long total = totalInCents.sum();
+        if (METRICS.isEnabled()) {
+            METRICS.priced(System.nanoTime() - start);
+        }
+        return total;
+    }
+
+    private ReentrantLock stripe(String productId) {
+        int hash = productId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * A line with the price of its product when it was added, guarded by the lock of its stripe.
+     */
+    private static final class Line {
+
+        private final Product product;
+        private final long priceInCents;
+        private int quantity;
+
+        private Line(Product product, int quantity) {
+            this(product, product.getPriceInCents(), quantity);
+        }
+
+        /**
+         * Copy of the line, taken under its lock.
+         */
+        private Line(Line line) {
+            this(line.product, line.priceInCents, line.quantity);
+        }
+
+        private Line(Product product, long priceInCents, int quantity) {
+            this.product = product;
+            this.priceInCents = priceInCents;
+            this.quantity = quantity;
+        }
+
+        private long totalInCents() {
+            return quantity * priceInCents;
+        }
+    }
+}
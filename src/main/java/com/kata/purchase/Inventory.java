@@ -0,0 +1,191 @@
+package com.kata.purchase;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Stock of every product, with the units held by carts taken out of it until they are released
+ * or their reservation expires. Stock counters are updated with compare-and-set only, so any
+ * number of carts can reserve the same product concurrently without overselling it.
+ * Products the inventory never stocked have no unit to reserve.
+ */
+public class Inventory {
+
+    private final ConcurrentHashMap<String, AtomicLong> stock = new ConcurrentHashMap<>();
+    private final Set<Reservation> reservations = ConcurrentHashMap.newKeySet();
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+
+    /**
+     * @param timeToLive how long reserved units stay held after the reservation last changed
+     */
+    public Inventory(long timeToLive, TimeUnit unit) {
+        this(timeToLive, unit, System::nanoTime);
+    }
+
+    public Inventory(long timeToLive, TimeUnit unit, LongSupplier nanoClock) {
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.clock = nanoClock;
+    }
+
+    /**
+     * Adds units to the product's stock (removes them when negative).
+     */
+    public void restock(String productId, long units) {
+        stock.computeIfAbsent(productId, (id) -> new AtomicLong()).addAndGet(units);
+    }
+
+    /**
+     * Units neither sold nor held by a reservation.
+     */
+    public long available(String productId) {
+        AtomicLong units = stock.get(productId);
+        return units == null ? 0 : units.get();
+    }
+
+    public boolean isAvailable(String productId) {
+        return available(productId) > 0;
+    }
+
+    /**
+     * Makes {@link Product#isAvailable()} a live view of this inventory.
+     */
+    public Product track(Product product) {
+        product.setInventory(this);
+        return product;
+    }
+
+    /**
+     * An empty reservation of the product, holding units through {@link Reservation#hold(int)}.
+     */
+    public Reservation reservation(String productId) {
+        return new Reservation(productId);
+    }
+
+    private boolean take(String productId, int units) {
+        AtomicLong counter = stock.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            long available = counter.get();
+            if (available < units) {
+                return false;
+            }
+            if (counter.compareAndSet(available, available - units)) {
+                return true;
+            }
+        }
+    }
+
+    private void giveBack(String productId, int units) {
+        stock.get(productId).addAndGet(units);
+    }
+
+    /**
+     * Releases every reservation that has not changed for longer than the time to live.
+     *
+     * @return the number of expired reservations
+     */
+    public int expire() {
+        long now = clock.getAsLong();
+        int expired = 0;
+        for (Reservation reservation : reservations) {
+            if (reservation.expire(now)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Units of one product held for one cart.
+     */
+    public final class Reservation {
+
+        private final String productId;
+        private int units;
+        private long expiresAt;
+        private boolean expired;
+
+        private Reservation(String productId) {
+            this.productId = productId;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public synchronized int getUnits() {
+            return units;
+        }
+
+        /**
+         * Holds exactly {@code units} units, taking the missing ones from the stock or giving back the extra ones,
+         * and restarts the time to live.
+         *
+         * @return false, holding what it held before, when the stock is missing units
+         */
+        public synchronized boolean hold(int units) {
+            if (units > this.units && !take(productId, units - this.units)) {
+                return false;
+            }
+            if (units < this.units) {
+                giveBack(productId, this.units - units);
+            }
+            this.units = units;
+            this.expiresAt = clock.getAsLong() + timeToLiveNanos;
+            this.expired = false;
+            if (units > 0) {
+                reservations.add(this);
+            } else {
+                reservations.remove(this);
+            }
+            return true;
+        }
+
+        /**
+         * Gives back the units held beyond {@code units}, never taking any from the stock.
+         */
+        public synchronized void holdAtMost(int units) {
+            if (units < this.units) {
+                hold(units);
+            }
+        }
+
+        public void release() {
+            hold(0);
+        }
+
+        /**
+         * Turns the units held into units sold: they leave the reservation without going back to the stock.
+         *
+         * @return false, selling nothing, when the reservation expired since it last held units,
+         * which were then given back to the stock
+         */
+        public synchronized boolean commit() {
+            if (expired) {
+                return false;
+            }
+            units = 0;
+            reservations.remove(this);
+            return true;
+        }
+
+        private synchronized boolean expire(long now) {
+            if (now - expiresAt < 0) {
+                return false;
+            }
+            if (units > 0) {
+                giveBack(productId, units);
+                units = 0;
+                expired = true;
+            }
+            reservations.remove(this);
+            return true;
+        }
+    }
+}
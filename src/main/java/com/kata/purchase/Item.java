@@ -1,18 +1,56 @@
 package com.kata.purchase;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import static com.kata.purchase.Constants.MESSAGE_SEPARATOR;
-import static com.kata.purchase.Constants.QUANTITY;
+import java.io.IOException;
+import java.util.Comparator;
+
+import static com.kata.purchase.Constants.*;
+import static com.kata.purchase.Money.NO_PRICE;
 
 @Getter
 @Setter
 public class Item {
 
+    /**
+     * Order in which carts print their lines: cheapest first, then by label and product id.
+     */
+    public static final Comparator<Item> DISPLAY_ORDER = Printing.displayOrder(Item::getPriceInCents, Item::getLabel, Item::getId);
+
     private Product product;
     private int quantity;
 
+    /**
+     * Cart this item is a line of, notified of every quantity or product change.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.NONE)
+    private Cart cart;
+
+    /**
+     * Product this item asked to be told of the changes of, so that it asks each product once.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Product tracked;
+
+    /**
+     * Position of this line in its cart's display order.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private Cart.DisplayKey displayKey;
+
+    /**
+     * The printed line as last rendered, reused while the quantity, the product's rendered fragment
+     * and its availability stay the same.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Rendered rendered;
+
     public Item(Product product, int quantity) {
         this.product = product;
         this.quantity = quantity;
@@ -23,36 +61,116 @@ public class Item {
         this.quantity = 1;
     }
 
+    public void setQuantity(int quantity) {
+        int previousQuantity = this.quantity;
+        this.quantity = quantity;
+        this.rendered = null;
+        if (cart != null && previousQuantity != quantity) {
+            cart.quantityChanged(this, previousQuantity);
+        }
+    }
+
+    public void setProduct(Product product) {
+        Product previousProduct = this.product;
+        this.product = product;
+        if (cart != null && previousProduct != product) {
+            track();
+            cart.lineChanged(this);
+        }
+    }
+
+    void setCart(Cart cart) {
+        this.cart = cart;
+        if (cart != null) {
+            track();
+        }
+    }
+
+    private void track() {
+        if (product != null && tracked != product) {
+            product.track(this);
+            tracked = product;
+        }
+    }
+
+    /**
+     * The id, label or price of {@code changed} changed, which only moves this line when it still holds it.
+     */
+    void productChanged(Product changed) {
+        Cart holder = cart;
+        if (holder != null && product == changed) {
+            holder.lineChanged(this);
+        }
+    }
+
     public void increment() {
-        this.quantity++;
+        setQuantity(this.quantity + 1);
     }
 
     public void decrement() {
         if (this.quantity == 0) {
             return;
         }
-        this.quantity--;
+        setQuantity(this.quantity - 1);
     }
 
     public String print() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(this.product.print())
-                .append(MESSAGE_SEPARATOR)
-                .append(this.printQuantity());
-        return sb.toString();
+        return Printing.print(this::printTo);
+    }
+
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        out.append(rendered());
+        return out;
+    }
+
+    private String rendered() {
+        String fragment = this.product.rendered();
+        boolean available = this.product.isAvailable();
+        Rendered line = this.rendered;
+        if (line == null || line.fragment != fragment || line.available != available) {
+            line = new Rendered(fragment, available, fragment
+                    + (available ? AVAILABLE : NOT_AVAILABLE)
+                    + MESSAGE_SEPARATOR
+                    + QUANTITY
+                    + this.quantity);
+            this.rendered = line;
+        }
+        return line.text;
     }
 
-    private String printQuantity() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(QUANTITY)
-                .append(this.getQuantity());
-        return sb.toString();
+    /**
+     * A rendered line with what it was rendered from, published as one object so that a line
+     * printed from several threads never mixes two renderings.
+     */
+    private static final class Rendered {
+
+        private final String fragment;
+        private final boolean available;
+        private final String text;
+
+        private Rendered(String fragment, boolean available, String text) {
+            this.fragment = fragment;
+            this.available = available;
+            this.text = text;
+        }
     }
 
     public Double getPrice() {
         return product == null ? null : product.getPrice();
     }
 
+    public long getPriceInCents() {
+        return product == null ? NO_PRICE : product.getPriceInCents();
+    }
+
+    /**
+     * Quantity * unit price in cents, 0 when the product has no price.
+     */
+    public long getTotalInCents() {
+        long priceInCents = getPriceInCents();
+        return priceInCents == NO_PRICE ? 0 : quantity * priceInCents;
+    }
+
     public String getLabel() {
         return product == null ? null : product.getLabel();
     }
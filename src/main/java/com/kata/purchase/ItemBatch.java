@@ -0,0 +1,50 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imported lines waiting to be added to a cart together through {@link Cart#addAll(java.util.Collection)},
+ * at most {@code batchSize} at a time.
+ */
+final class ItemBatch {
+
+    private final Cart cart;
+    private final int batchSize;
+    private final List<Item> items;
+    private long count;
+
+    ItemBatch(Cart cart, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be greater than 0");
+        }
+        this.cart = cart;
+        this.batchSize = batchSize;
+        this.items = new ArrayList<>(Math.min(batchSize, 1024));
+    }
+
+    void add(String id, String label, long priceInCents, boolean available, int quantity) throws PurchaseException {
+        items.add(new Item(new Product.ProductBuilder(id)
+                .label(label)
+                .priceInCents(priceInCents)
+                .available(available)
+                .build(), quantity));
+        count++;
+        if (items.size() == batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * @return the number of lines read
+     */
+    long flush() throws PurchaseException {
+        if (!items.isEmpty()) {
+            cart.addAll(items);
+            items.clear();
+        }
+        return count;
+    }
+}
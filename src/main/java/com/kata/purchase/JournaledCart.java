@@ -0,0 +1,138 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+
+import static com.kata.purchase.CartJournal.*;
+import static com.kata.purchase.exception.ErrorCode.ITEMS_SHOULD_NOT_NULL;
+
+/**
+ * Cart whose successful mutations are appended to a {@link CartJournal}. A mutation and its record are
+ * applied under the journal lock, so a snapshot never sees one without the other.
+ * The wrapped cart must only be changed through this class.
+ */
+public class JournaledCart implements ShoppingCart {
+
+    private final long cartId;
+    private final Cart cart;
+    private final CartJournal journal;
+
+    JournaledCart(long cartId, Cart cart, CartJournal journal) {
+        this.cartId = cartId;
+        this.cart = cart;
+        this.journal = journal;
+    }
+
+    public long getCartId() {
+        return cartId;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    @Override
+    public void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        synchronized (journal) {
+            for (Item item : items) {
+                cart.add(item);
+                journal.append(cartId, ADD, item.getProduct(), item.getQuantity());
+            }
+        }
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        synchronized (journal) {
+            Product product = productOf(productId);
+            ErrorCode code = cart.tryRemoveItem(productId);
+            if (code == null) {
+                journal.append(cartId, REMOVE, product, 0);
+            }
+            return code;
+        }
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        synchronized (journal) {
+            ErrorCode code = cart.tryUpdateProductQuantity(productId, quantity);
+            if (code == null) {
+                journal.append(cartId, UPDATE, productOf(productId), quantity);
+            }
+            return code;
+        }
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        synchronized (journal) {
+            ErrorCode code = cart.tryIncrementQuantity(productId);
+            if (code == null) {
+                journal.append(cartId, INCREMENT, productOf(productId), 0);
+            }
+            return code;
+        }
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        synchronized (journal) {
+            ErrorCode code = cart.tryDecrementQuantity(productId);
+            if (code == null) {
+                journal.append(cartId, DECREMENT, productOf(productId), 0);
+            }
+            return code;
+        }
+    }
+
+    private Product productOf(String productId) {
+        Item line = cart.getItems().get(productId);
+        return line == null ? null : line.getProduct();
+    }
+
+    @Override
+    public String print() {
+        return cart.print();
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        return cart.printTo(out);
+    }
+
+    @Override
+    public double price() {
+        return cart.price();
+    }
+
+    @Override
+    public long priceInCents() {
+        return cart.priceInCents();
+    }
+}
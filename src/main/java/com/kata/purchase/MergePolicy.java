@@ -0,0 +1,33 @@
+package com.kata.purchase;
+
+/**
+ * How {@link CartDelta#merge(Cart, Cart, MergePolicy)} resolves a product present in both carts.
+ */
+public enum MergePolicy {
+
+    /**
+     * Both quantities added up, an {@link ArithmeticException} when the sum does not fit in an int.
+     */
+    SUM,
+
+    /**
+     * The larger quantity.
+     */
+    MAX,
+
+    /**
+     * The line of the cart merged in, taken as the one changed last (e.g. the guest cart at login).
+     */
+    PREFER_NEWER;
+
+    int quantity(int into, int from) {
+        switch (this) {
+            case SUM:
+                return Math.addExact(into, from);
+            case MAX:
+                return Math.max(into, from);
+            default:
+                return from;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.kata.purchase;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic: amounts are primitive longs counted in cents (scale 2, EUR).
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException when the amount in cents does not fit in a long
+     */
+    public static long toCents(Double amount) {
+        if (amount == null) {
+            return NO_PRICE;
+        }
+        return BigDecimal.valueOf(amount)
+                .setScale(SCALE, RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * Parses a decimal amount ("2.5", "-0.05", "10") without going through a double,
+     * rounding digits beyond the scale half even.
+     *
+     * @throws NumberFormatException when the text is not a decimal number
+     * @throws ArithmeticException when the amount in cents does not fit in a long
+     */
+    public static long parseCents(String amount) {
+        int length = amount.length();
+        int start = length > 0 && amount.charAt(0) == '-' ? 1 : 0;
+        long units = 0;
+        int i = start;
+        while (i < length && i - start < 16 && isDigit(amount.charAt(i))) {
+            units = units * 10 + (amount.charAt(i++) - '0');
+        }
+        long cents = units * CENTS_PER_UNIT;
+        int digits = i - start;
+        if (i < length && amount.charAt(i) == '.') {
+            int end = ++i + SCALE;
+            long scale = CENTS_PER_UNIT / 10;
+            while (i < length && i < end && isDigit(amount.charAt(i))) {
+                cents += (amount.charAt(i++) - '0') * scale;
+                scale /= 10;
+                digits++;
+            }
+        }
+        if (i != length || digits == 0) {
+            return new BigDecimal(amount)
+                    .setScale(SCALE, RoundingMode.HALF_EVEN)
+                    .unscaledValue()
+                    .longValueExact();
+        }
+        return start == 1 ? -cents : cents;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static Double toDouble(long cents) {
+        return cents == NO_PRICE ? null : amount(cents);
+    }
+
+    public static double amount(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    /**
+     * Appends the amount the way {@link Double#toString(double)} renders it for usual prices
+     * ("2.5", "10.0", "0.05"), without going through a double.
+     */
+    public static void appendTo(Appendable out, long cents) throws IOException {
+        if (cents == NO_PRICE) {
+            out.append(null);
+            return;
+        }
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        Printing.appendNumber(out, cents / CENTS_PER_UNIT);
+        out.append('.');
+        int fraction = (int) (cents % CENTS_PER_UNIT);
+        if (fraction % 10 == 0) {
+            out.append((char) ('0' + fraction / 10));
+            return;
+        }
+        out.append((char) ('0' + fraction / 10))
+                .append((char) ('0' + fraction % 10));
+    }
+
+    public static String format(long cents) {
+        return Printing.print((out) -> appendTo(out, cents));
+    }
+}
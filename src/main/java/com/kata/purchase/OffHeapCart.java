@@ -0,0 +1,250 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.kata.purchase.Money.NO_PRICE;
+import static com.kata.purchase.OffHeapLineStore.*;
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Cart keeping its lines in an {@link OffHeapLineStore} block, as product code, quantity and unit price
+ * in cents, with products interned in a shared {@link ProductCatalog}: on the heap, a cart is this one
+ * small object whatever its number of lines. Behaves like {@link Cart}: adding a product already in the
+ * cart adds one unit, and unknown ids give {@link ErrorCode#ITEM_NOT_FOUND}.
+ * <p>
+ * Lines are found by scanning the block, which suits session carts of tens of lines rather than
+ * very large ones (see {@link CompactCart}). A line keeps the price its product had when it was added,
+ * and prints that price with the label and availability of the catalog's product. {@link #release()} must be called once the cart is discarded,
+ * or its block is never reused. Not thread-safe.
+ */
+public class OffHeapCart implements ShoppingCart {
+
+    private final OffHeapLineStore store;
+    private final ProductCatalog catalog;
+    private long block = -1;
+    private int sizeClass;
+    private int size;
+    private long totalInCents;
+
+    public OffHeapCart(OffHeapLineStore store, ProductCatalog catalog) {
+        this.store = store;
+        this.catalog = catalog;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Quantity of the product's line, -1 when the product is not in the cart.
+     */
+    public int getQuantity(String productId) {
+        int line = find(productId);
+        return line < 0 ? -1 : quantity(line);
+    }
+
+    /**
+     * Empties the cart and gives its block back to the store.
+     */
+    public void release() {
+        if (block >= 0) {
+            store.free(block, sizeClass);
+            block = -1;
+        }
+        size = 0;
+        totalInCents = 0;
+    }
+
+    @Override
+    public void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        for (Item item : items) {
+            if (item == null || !item.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            Product product = catalog.intern(item.getProduct());
+            int line = find(product.getCatalogCode());
+            if (line >= 0) {
+                setQuantity(line, quantity(line) + 1);
+            } else {
+                append(product, item.getQuantity());
+            }
+        }
+    }
+
+    private void append(Product product, int quantity) {
+        if (block < 0) {
+            sizeClass = MIN_SIZE_CLASS;
+            block = store.allocate(sizeClass);
+        } else if (size == 1 << sizeClass) {
+            long grown = store.allocate(sizeClass + 1);
+            store.copy(block, grown, size);
+            store.free(block, sizeClass);
+            block = grown;
+            sizeClass++;
+        }
+        long address = address(size++);
+        store.putInt(address, product.getCatalogCode());
+        store.putInt(address + QUANTITY_OFFSET, quantity);
+        store.putLong(address + PRICE_OFFSET, product.getPriceInCents());
+        totalInCents += lineTotal(size - 1);
+    }
+
+    private int find(String productId) {
+        return productId == null ? -1 : find(catalog.code(productId));
+    }
+
+    private int find(int code) {
+        if (code < 0) {
+            return -1;
+        }
+        for (int line = 0; line < size; line++) {
+            if (store.getInt(address(line)) == code) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private long address(int line) {
+        return block + (long) line * LINE_BYTES;
+    }
+
+    private int code(int line) {
+        return store.getInt(address(line));
+    }
+
+    private int quantity(int line) {
+        return store.getInt(address(line) + QUANTITY_OFFSET);
+    }
+
+    private long priceInCents(int line) {
+        return store.getLong(address(line) + PRICE_OFFSET);
+    }
+
+    private long lineTotal(int line) {
+        long priceInCents = priceInCents(line);
+        return priceInCents == NO_PRICE ? 0 : quantity(line) * priceInCents;
+    }
+
+    private void setQuantity(int line, int quantity) {
+        totalInCents -= lineTotal(line);
+        store.putInt(address(line) + QUANTITY_OFFSET, quantity);
+        totalInCents += lineTotal(line);
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    /**
+     * Moves the last line into the removed one's place.
+     */
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        int line = find(productId);
+        if (line < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        totalInCents -= lineTotal(line);
+        int last = --size;
+        if (line != last) {
+            store.copy(address(last), address(line), 1);
+        }
+        return null;
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        int line = find(productId);
+        if (line < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        setQuantity(line, quantity);
+        return null;
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        int line = find(productId);
+        if (line < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        setQuantity(line, quantity(line) + 1);
+        return null;
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        int line = find(productId);
+        if (line < 0) {
+            return ITEM_NOT_FOUND;
+        }
+        if (quantity(line) > 0) {
+            setQuantity(line, quantity(line) - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public String print() {
+        return Printing.print(this::printTo);
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        for (int line : displayOrder()) {
+            Printing.appendLine(out, catalog.get(code(line)), priceInCents(line), quantity(line));
+            out.append(Cart.LINE_SEPARATOR);
+        }
+        return out;
+    }
+
+    /**
+     * Lines in {@link Item#DISPLAY_ORDER}, sorted on every print so that nothing is kept on the heap.
+     */
+    private Integer[] displayOrder() {
+        Integer[] lines = new Integer[size];
+        for (int line = 0; line < size; line++) {
+            lines[line] = line;
+        }
+        Arrays.sort(lines, Printing.displayOrder(this::priceInCents,
+                (line) -> catalog.get(code(line)).getLabel(), (line) -> catalog.get(code(line)).getId()));
+        return lines;
+    }
+
+    @Override
+    public double price() {
+        return Money.amount(totalInCents);
+    }
+
+    @Override
+    public long priceInCents() {
+        return totalInCents;
+    }
+}
@@ -0,0 +1,166 @@
+package com.kata.purchase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage for the lines of many {@link OffHeapCart}s outside the Java heap, in direct {@link ByteBuffer}
+ * slabs allocated once and never given back: millions of carts cost the garbage collector a few
+ * buffers instead of millions of maps, items and boxed prices.
+ * <p>
+ * Each cart owns one block of 2^k lines (k from {@link #MIN_SIZE_CLASS}), carved from the current slab
+ * and recycled through one free list per size class. A line is 16 bytes:
+ * <pre>
+ * line := productCode(int) quantity(int) priceInCents(long)
+ * </pre>
+ * Block addresses are longs: slab index in the high bits, offset in the slab in the low bits.
+ * Allocation is thread-safe; a block must only be read and written by the cart owning it.
+ */
+public class OffHeapLineStore {
+
+    static final int LINE_BYTES = 16;
+    static final int QUANTITY_OFFSET = 4;
+    static final int PRICE_OFFSET = 8;
+
+    /**
+     * Smallest block: 4 lines.
+     */
+    static final int MIN_SIZE_CLASS = 2;
+
+    private static final int DEFAULT_SLAB_SHIFT = 20;
+
+    private final int slabShift;
+    private final long offsetMask;
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private int slabTop;
+    private final List<long[]> freeBlocks = new ArrayList<>();
+    private int[] freeCounts = new int[0];
+    private long usedBytes;
+
+    /**
+     * With 1 MB slabs, holding carts of up to 65,536 lines.
+     */
+    public OffHeapLineStore() {
+        this(DEFAULT_SLAB_SHIFT);
+    }
+
+    /**
+     * @param slabShift log2 of the slab size in bytes, which bounds the lines of one cart to slab size / 16
+     */
+    public OffHeapLineStore(int slabShift) {
+        if (slabShift < MIN_SIZE_CLASS + 4 || slabShift > 28) {
+            throw new IllegalArgumentException("Slab shift should be between " + (MIN_SIZE_CLASS + 4) + " and 28");
+        }
+        this.slabShift = slabShift;
+        this.offsetMask = (1L << slabShift) - 1;
+        this.slabTop = 1 << slabShift;
+    }
+
+    /**
+     * Size class of the smallest block holding {@code lines} lines.
+     */
+    static int sizeClassFor(int lines) {
+        int sizeClass = MIN_SIZE_CLASS;
+        while (1 << sizeClass < lines) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * Address of a free block of 2^sizeClass lines, recycled when possible.
+     *
+     * @throws IllegalArgumentException when the block would not fit in a slab
+     */
+    synchronized long allocate(int sizeClass) {
+        int bytes = LINE_BYTES << sizeClass;
+        if (sizeClass + 4 > slabShift) {
+            throw new IllegalArgumentException("Carts cannot hold more than " + ((1 << slabShift) / LINE_BYTES) + " lines");
+        }
+        usedBytes += bytes;
+        if (sizeClass < freeCounts.length && freeCounts[sizeClass] > 0) {
+            return freeBlocks.get(sizeClass)[--freeCounts[sizeClass]];
+        }
+        if (slabTop + bytes > 1 << slabShift) {
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = ByteBuffer.allocateDirect(1 << slabShift).order(ByteOrder.nativeOrder());
+            slabs = grown;
+            slabTop = 0;
+        }
+        long address = ((long) (slabs.length - 1) << slabShift) | slabTop;
+        slabTop += bytes;
+        return address;
+    }
+
+    /**
+     * Gives a block back to the free list of its size class.
+     */
+    synchronized void free(long address, int sizeClass) {
+        usedBytes -= LINE_BYTES << sizeClass;
+        if (sizeClass >= freeCounts.length) {
+            freeCounts = Arrays.copyOf(freeCounts, sizeClass + 1);
+            while (freeBlocks.size() <= sizeClass) {
+                freeBlocks.add(new long[16]);
+            }
+        }
+        long[] blocks = freeBlocks.get(sizeClass);
+        if (freeCounts[sizeClass] == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            freeBlocks.set(sizeClass, blocks);
+        }
+        blocks[freeCounts[sizeClass]++] = address;
+    }
+
+    /**
+     * Copies lines from one block to another (of the same store).
+     */
+    void copy(long from, long to, int lines) {
+        for (int i = 0; i < lines; i++) {
+            long line = (long) i * LINE_BYTES;
+            putInt(to + line, getInt(from + line));
+            putInt(to + line + QUANTITY_OFFSET, getInt(from + line + QUANTITY_OFFSET));
+            putLong(to + line + PRICE_OFFSET, getLong(from + line + PRICE_OFFSET));
+        }
+    }
+
+    int getInt(long address) {
+        return slab(address).getInt(offset(address));
+    }
+
+    void putInt(long address, int value) {
+        slab(address).putInt(offset(address), value);
+    }
+
+    long getLong(long address) {
+        return slab(address).getLong(offset(address));
+    }
+
+    void putLong(long address, long value) {
+        slab(address).putLong(offset(address), value);
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs[(int) (address >>> slabShift)];
+    }
+
+    private int offset(long address) {
+        return (int) (address & offsetMask);
+    }
+
+    /**
+     * Direct memory reserved by the slabs.
+     */
+    public synchronized long getReservedBytes() {
+        return (long) slabs.length << slabShift;
+    }
+
+    /**
+     * Bytes of the blocks currently owned by carts.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
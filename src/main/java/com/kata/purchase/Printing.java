@@ -0,0 +1,94 @@
+package com.kata.purchase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import static com.kata.purchase.Constants.*;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+
+/**
+ * Helpers shared by the {@code printTo(Appendable)} renderers.
+ */
+final class Printing {
+
+    interface Printer {
+        void printTo(Appendable out) throws IOException;
+    }
+
+    private Printing() {
+    }
+
+    /**
+     * Renders into a String; a StringBuilder never throws the declared IOException.
+     */
+    static String print(Printer printer) {
+        return print(printer, 16);
+    }
+
+    /**
+     * Same as {@link #print(Printer)} into a builder of the given initial capacity, so that output
+     * of a known size is not copied over and over as the builder grows.
+     */
+    static String print(Printer printer, int capacity) {
+        StringBuilder sb = new StringBuilder(capacity);
+        try {
+            printer.printTo(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Order in which carts print their lines, whatever they store them as: cheapest first, then by label
+     * and product id, nulls first.
+     */
+    static <T> Comparator<T> displayOrder(ToLongFunction<T> priceInCents, Function<T, String> label, Function<T, String> id) {
+        return Comparator.<T>comparingLong(priceInCents)
+                .thenComparing(label, nullsFirst(naturalOrder()))
+                .thenComparing(id, nullsFirst(naturalOrder()));
+    }
+
+    /**
+     * Writes a cart line at {@code priceInCents}, the price the cart counts it at, with the label and
+     * availability of its product. The product's rendered fragment is reused when it has that price.
+     */
+    static void appendLine(Appendable out, Product product, long priceInCents, int quantity) throws IOException {
+        if (priceInCents == product.getPriceInCents()) {
+            out.append(product.rendered());
+        } else {
+            out.append(product.getLabel()).append(MESSAGE_SEPARATOR);
+            Money.appendTo(out, priceInCents);
+            out.append(EURO).append(MESSAGE_SEPARATOR);
+        }
+        out.append(product.isAvailable() ? AVAILABLE : NOT_AVAILABLE)
+                .append(MESSAGE_SEPARATOR)
+                .append(QUANTITY);
+        appendNumber(out, quantity);
+    }
+
+    /**
+     * Writes a decimal number digit by digit, without the String {@code Long.toString} would allocate.
+     */
+    static void appendNumber(Appendable out, long value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            if (value == Long.MIN_VALUE) {
+                out.append("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.kata.purchase;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
 import static com.kata.purchase.Constants.*;
+import static com.kata.purchase.Money.NO_PRICE;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 @Getter
@@ -12,17 +20,166 @@ public class Product {
 
     private String id;
     private String label;
-    private Double price;
+    private long priceInCents = NO_PRICE;
     private boolean available;
 
+    /**
+     * Cart lines holding this product, told of every id, label or price change so that they can
+     * move in their own cart. Held weakly, so that a discarded cart is not kept alive by a product
+     * that outlives it; cleared references are dropped when the list grows.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<WeakReference<Item>> lines;
+
+    /**
+     * Size of {@link #lines} at which the cleared references are dropped before adding another one.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int pruneAt = 8;
+
+    /**
+     * Code of this product in the {@link ProductCatalog} that shares it, -1 for a private product.
+     * Shared products are immutable, so they never need to track their lines.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.NONE)
+    private int catalogCode = -1;
+
+    /**
+     * Inventory tracking this product's stock, which {@link #isAvailable()} then reads instead of {@link #available}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile Inventory inventory;
+
+    /**
+     * "label -- price EUR -- " as last printed, cleared when the label or price changes.
+     * Availability is appended on every print, since an inventory can change it at any time.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String rendered;
+
     public boolean isValid() {
-        return !isEmpty(id) && price != null;
+        return !isEmpty(id) && priceInCents != NO_PRICE;
+    }
+
+    public boolean isAvailable() {
+        Inventory tracking = inventory;
+        return tracking == null ? available : tracking.isAvailable(id);
+    }
+
+    public Double getPrice() {
+        return Money.toDouble(priceInCents);
+    }
+
+    public void setPrice(Double price) {
+        setPriceInCents(Money.toCents(price));
+    }
+
+    public void setPriceInCents(long priceInCents) {
+        checkNotShared();
+        long previousPriceInCents = this.priceInCents;
+        this.priceInCents = priceInCents;
+        if (previousPriceInCents != priceInCents) {
+            rendered = null;
+            changed();
+        }
+    }
+
+    public void setLabel(String label) {
+        checkNotShared();
+        this.label = label;
+        rendered = null;
+        changed();
+    }
+
+    public void setId(String id) {
+        checkNotShared();
+        this.id = id;
+        changed();
+    }
+
+    public void setAvailable(boolean available) {
+        checkNotShared();
+        this.available = available;
+    }
+
+    public boolean isShared() {
+        return catalogCode >= 0;
+    }
+
+    private void checkNotShared() {
+        if (isShared()) {
+            throw new UnsupportedOperationException("Product " + id + " is shared by a catalog and cannot be modified");
+        }
+    }
+
+    /**
+     * Immutable copy registered under {@code catalogCode}.
+     */
+    Product share(int catalogCode) {
+        Product shared = new Product();
+        shared.id = this.id;
+        shared.label = this.label;
+        shared.priceInCents = this.priceInCents;
+        shared.available = this.available;
+        shared.inventory = this.inventory;
+        shared.catalogCode = catalogCode;
+        return shared;
+    }
+
+    boolean sameAs(Product other) {
+        return priceInCents == other.priceInCents
+                && available == other.available
+                && inventory == other.inventory
+                && Objects.equals(id, other.id)
+                && Objects.equals(label, other.label);
+    }
+
+    /**
+     * Tells {@code line} of the changes of this product from now on. Shared products never change,
+     * so they do not track their lines.
+     */
+    void track(Item line) {
+        if (isShared()) {
+            return;
+        }
+        synchronized (this) {
+            if (lines == null) {
+                lines = new ArrayList<>(2);
+            } else if (lines.size() >= pruneAt) {
+                lines.removeIf(reference -> reference.get() == null);
+                pruneAt = Math.max(8, lines.size() * 2);
+            }
+            lines.add(new WeakReference<>(line));
+        }
+    }
+
+    private void changed() {
+        Item[] holders;
+        synchronized (this) {
+            if (lines == null) {
+                return;
+            }
+            holders = new Item[lines.size()];
+            for (int i = 0; i < holders.length; i++) {
+                holders[i] = lines.get(i).get();
+            }
+        }
+        for (Item line : holders) {
+            if (line != null) {
+                line.productChanged(this);
+            }
+        }
     }
 
     public static class ProductBuilder {
         private String id;
         private String label;
-        private Double price;
+        private long priceInCents = NO_PRICE;
         private boolean available;
 
         public ProductBuilder(String id) {
@@ -35,7 +192,12 @@ public class Product {
         }
 
         public ProductBuilder price(Double price) {
-            this.price = price;
+            this.priceInCents = Money.toCents(price);
+            return this;
+        }
+
+        public ProductBuilder priceInCents(long priceInCents) {
+            this.priceInCents = priceInCents;
             return this;
         }
 
@@ -49,20 +211,41 @@ public class Product {
             product.setId(this.id);
             product.setLabel(this.label);
             product.setAvailable(this.available);
-            product.setPrice(this.price);
+            product.setPriceInCents(this.priceInCents);
             return product;
         }
     }
 
     public String print() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(this.label)
-                .append(MESSAGE_SEPARATOR)
-                .append(this.price)
-                .append(EURO)
-                .append(MESSAGE_SEPARATOR)
-                .append(this.available ? AVAILABLE : NOT_AVAILABLE);
-        return sb.toString();
+        return Printing.print(this::printTo);
+    }
+
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        out.append(rendered())
+                .append(isAvailable() ? AVAILABLE : NOT_AVAILABLE);
+        return out;
+    }
+
+    /**
+     * The printed form up to the availability, the same instance as long as the label and price do not change.
+     */
+    String rendered() {
+        String text = rendered;
+        if (text == null) {
+            StringBuilder sb = new StringBuilder()
+                    .append(this.label)
+                    .append(MESSAGE_SEPARATOR);
+            try {
+                Money.appendTo(sb, this.priceInCents);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            text = sb.append(EURO)
+                    .append(MESSAGE_SEPARATOR)
+                    .toString();
+            rendered = text;
+        }
+        return text;
     }
 
 }
@@ -0,0 +1,97 @@
+package com.kata.purchase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry handing out one immutable, shared {@link Product} per product id, so that carts built
+ * from many requests reference the same instances instead of holding their own copies.
+ * Every product gets a dense int code, stable for its id, usable as a compact reference.
+ * <p>
+ * Loading a product whose fields changed replaces the shared instance under the same code;
+ * lines already holding the previous instance keep its price until they are repriced.
+ */
+public class ProductCatalog {
+
+    private final ConcurrentHashMap<String, Product> byId;
+    private volatile Product[] byCode;
+    private int size;
+
+    public ProductCatalog() {
+        this(16);
+    }
+
+    public ProductCatalog(int expectedSize) {
+        this.byId = new ConcurrentHashMap<>(expectedSize);
+        this.byCode = new Product[Math.max(expectedSize, 16)];
+    }
+
+    /**
+     * The shared product with the same id, registering a copy of {@code product} when the id is new.
+     */
+    public Product intern(Product product) {
+        if (product == null || product.getId() == null) {
+            return product;
+        }
+        Product shared = byId.get(product.getId());
+        return shared != null ? shared : register(product, false);
+    }
+
+    /**
+     * Registers or refreshes every product in one pass, growing the code table once.
+     */
+    public void load(Collection<Product> products) {
+        synchronized (this) {
+            ensureCapacity(size + products.size());
+            for (Product product : products) {
+                if (product != null && product.getId() != null) {
+                    register(product, true);
+                }
+            }
+        }
+    }
+
+    private synchronized Product register(Product product, boolean replace) {
+        Product shared = byId.get(product.getId());
+        if (shared != null && (!replace || shared.sameAs(product))) {
+            return shared;
+        }
+        int code = shared != null ? shared.getCatalogCode() : size++;
+        ensureCapacity(size);
+        Product registered = product.share(code);
+        byCode[code] = registered;
+        byId.put(registered.getId(), registered);
+        return registered;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > byCode.length) {
+            byCode = Arrays.copyOf(byCode, Math.max(capacity, byCode.length * 2));
+        }
+    }
+
+    public Product get(String productId) {
+        return productId == null ? null : byId.get(productId);
+    }
+
+    /**
+     * The product registered under {@code code}, null when the code is unknown.
+     */
+    public Product get(int code) {
+        Product[] products = byCode;
+        return code < 0 || code >= products.length ? null : products[code];
+    }
+
+    /**
+     * Code of the product id, -1 when the id is not registered.
+     */
+    public int code(String productId) {
+        Product product = get(productId);
+        return product == null ? -1 : product.getCatalogCode();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,188 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Cart holding in an {@link Inventory} the units of every line: adding or incrementing a line reserves
+ * units first and fails with {@link ErrorCode#OUT_OF_STOCK} when the stock lacks them, removing or
+ * decrementing it gives them back and never fails. A line whose reservation expired reserves again
+ * when it next grows.
+ * The wrapped cart must only be changed through this class, from one thread at a time.
+ */
+public class ReservingCart implements ShoppingCart {
+
+    private final Cart cart;
+    private final Inventory inventory;
+    private final Map<String, Inventory.Reservation> reservations = new HashMap<>();
+
+    public ReservingCart(Cart cart, Inventory inventory) {
+        this.cart = cart;
+        this.inventory = inventory;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    /**
+     * Units currently held for the product's line, fewer than its quantity once the reservation expired.
+     */
+    public int getReservedUnits(String productId) {
+        Inventory.Reservation reservation = reservations.get(productId);
+        return reservation == null ? 0 : reservation.getUnits();
+    }
+
+    /**
+     * Reserves again the units of every line, for example before checkout.
+     *
+     * @return {@link ErrorCode#OUT_OF_STOCK} when a line could not be held in full
+     */
+    public ErrorCode refresh() {
+        ErrorCode code = null;
+        for (Item line : cart.getItems().values()) {
+            if (!hold(line.getId(), line.getQuantity())) {
+                code = OUT_OF_STOCK;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Gives back every unit held, for example once the cart is checked out or abandoned.
+     */
+    public void releaseAll() {
+        reservations.values().forEach(Inventory.Reservation::release);
+        reservations.clear();
+    }
+
+    @Override
+    public void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        for (Item item : items) {
+            if (item == null || !item.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            String productId = item.getId();
+            Item line = cart.getItems().get(productId);
+            int quantity = line == null ? item.getQuantity() : line.getQuantity() + 1;
+            if (!hold(productId, quantity)) {
+                throw new PurchaseException(OUT_OF_STOCK);
+            }
+            cart.add(item);
+        }
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public ErrorCode tryRemoveItem(String productId) {
+        ErrorCode code = cart.tryRemoveItem(productId);
+        if (code == null) {
+            Inventory.Reservation reservation = reservations.remove(productId);
+            if (reservation != null) {
+                reservation.release();
+            }
+        }
+        return code;
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        return setQuantity(productId, quantity, 0);
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        return setQuantity(productId, -1, 1);
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        return setQuantity(productId, -1, -1);
+    }
+
+    /**
+     * Applies the line's new quantity, either {@code quantity} or the current one plus {@code delta}
+     * (never below 0). A line that grows holds its units first; one that shrinks gives back the units
+     * held beyond its new quantity afterwards, without ever taking any from the stock.
+     */
+    private ErrorCode setQuantity(String productId, int quantity, int delta) {
+        Item line = cart.getItems().get(productId);
+        if (line == null) {
+            return ITEM_NOT_FOUND;
+        }
+        int target = quantity >= 0 ? quantity : Math.max(0, line.getQuantity() + delta);
+        if (target <= line.getQuantity()) {
+            ErrorCode code = cart.tryUpdateProductQuantity(productId, target);
+            Inventory.Reservation reservation = reservations.get(productId);
+            if (code == null && reservation != null) {
+                reservation.holdAtMost(target);
+            }
+            return code;
+        }
+        Inventory.Reservation reservation = reservations.computeIfAbsent(productId, inventory::reservation);
+        int held = reservation.getUnits();
+        if (!reservation.hold(target)) {
+            return OUT_OF_STOCK;
+        }
+        ErrorCode code = cart.tryUpdateProductQuantity(productId, target);
+        if (code != null) {
+            reservation.holdAtMost(held);
+        }
+        return code;
+    }
+
+    private boolean hold(String productId, int units) {
+        return reservations.computeIfAbsent(productId, inventory::reservation).hold(units);
+    }
+
+    @Override
+    public String print() {
+        return cart.print();
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        return cart.printTo(out);
+    }
+
+    @Override
+    public double price() {
+        return cart.price();
+    }
+
+    @Override
+    public long priceInCents() {
+        return cart.priceInCents();
+    }
+}
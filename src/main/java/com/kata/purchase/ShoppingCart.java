@@ -0,0 +1,62 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Operations shared by every cart implementation.
+ */
+public interface ShoppingCart {
+
+    void add(Item... items) throws PurchaseException;
+
+    void removeItem(String productId) throws PurchaseException;
+
+    void updateProductQuantity(String productId, int quantity) throws PurchaseException;
+
+    void incrementQuantity(String productId) throws PurchaseException;
+
+    void decrementQuantity(String productId) throws PurchaseException;
+
+    /*
+     * Non-throwing variants, for callers expecting misses: they return the error code the
+     * throwing method would have thrown, or null when the operation was applied.
+     */
+
+    ErrorCode tryRemoveItem(String productId);
+
+    ErrorCode tryUpdateProductQuantity(String productId, int quantity);
+
+    ErrorCode tryIncrementQuantity(String productId);
+
+    ErrorCode tryDecrementQuantity(String productId);
+
+    String print();
+
+    /**
+     * Writes what {@link #print()} returns straight to {@code out}, line by line.
+     */
+    <A extends Appendable> A printTo(A out) throws IOException;
+
+    /**
+     * Writes what {@link #print()} returns to {@code buffer} as UTF-8.
+     *
+     * @throws java.nio.BufferOverflowException when the buffer is too small
+     */
+    default ByteBuffer printTo(ByteBuffer buffer) {
+        try {
+            return printTo(new ByteBufferAppendable(buffer)).flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    double price();
+
+    long priceInCents();
+
+}
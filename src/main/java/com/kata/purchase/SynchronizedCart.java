@@ -0,0 +1,83 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+
+/**
+ * Serializes every operation of the wrapped cart on a single monitor.
+ */
+public class SynchronizedCart implements ShoppingCart {
+
+    private final ShoppingCart cart;
+
+    public SynchronizedCart(ShoppingCart cart) {
+        this.cart = cart;
+    }
+
+    @Override
+    public synchronized void add(Item... items) throws PurchaseException {
+        cart.add(items);
+    }
+
+    @Override
+    public synchronized void removeItem(String productId) throws PurchaseException {
+        cart.removeItem(productId);
+    }
+
+    @Override
+    public synchronized void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        cart.updateProductQuantity(productId, quantity);
+    }
+
+    @Override
+    public synchronized void incrementQuantity(String productId) throws PurchaseException {
+        cart.incrementQuantity(productId);
+    }
+
+    @Override
+    public synchronized void decrementQuantity(String productId) throws PurchaseException {
+        cart.decrementQuantity(productId);
+    }
+
+    @Override
+    public synchronized ErrorCode tryRemoveItem(String productId) {
+        return cart.tryRemoveItem(productId);
+    }
+
+    @Override
+    public synchronized ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        return cart.tryUpdateProductQuantity(productId, quantity);
+    }
+
+    @Override
+    public synchronized ErrorCode tryIncrementQuantity(String productId) {
+        return cart.tryIncrementQuantity(productId);
+    }
+
+    @Override
+    public synchronized ErrorCode tryDecrementQuantity(String productId) {
+        return cart.tryDecrementQuantity(productId);
+    }
+
+    @Override
+    public synchronized String print() {
+        return cart.print();
+    }
+
+    @Override
+    public synchronized <A extends Appendable> A printTo(A out) throws IOException {
+        return cart.printTo(out);
+    }
+
+    @Override
+    public synchronized double price() {
+        return cart.price();
+    }
+
+    @Override
+    public synchronized long priceInCents() {
+        return cart.priceInCents();
+    }
+}
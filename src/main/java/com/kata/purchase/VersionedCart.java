@@ -0,0 +1,136 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+
+import java.io.IOException;
+
+import static com.kata.purchase.exception.ErrorCode.*;
+
+/**
+ * Cart publishing each of its versions as a {@link CartSnapshot} through one volatile reference.
+ * Writers are serialized and build the next version from the current one; readers take
+ * {@link #snapshot()} and get a consistent price and print without locking or copying.
+ * Products are interned in a {@link ProductCatalog} so that a published version never changes.
+ */
+public class VersionedCart implements ShoppingCart {
+
+    private final ProductCatalog catalog;
+    private volatile CartSnapshot current = CartSnapshot.EMPTY;
+
+    public VersionedCart() {
+        this(new ProductCatalog());
+    }
+
+    public VersionedCart(ProductCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * The latest published version.
+     */
+    public CartSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public synchronized void add(Item... items) throws PurchaseException {
+        if (items == null) {
+            throw new PurchaseException(ITEMS_SHOULD_NOT_NULL);
+        }
+        CartSnapshot next = current;
+        for (Item item : items) {
+            if (item == null || !item.isValid()) {
+                throw new PurchaseException(ITEM_NOT_VALID);
+            }
+            CartSnapshot.Line line = next.get(item.getId());
+            next = line == null
+                    ? next.with(catalog.intern(item.getProduct()), item.getQuantity())
+                    : next.with(line.getProduct(), line.getQuantity() + 1);
+        }
+        current = next;
+    }
+
+    @Override
+    public void removeItem(String productId) throws PurchaseException {
+        PurchaseException.check(tryRemoveItem(productId));
+    }
+
+    @Override
+    public void updateProductQuantity(String productId, int quantity) throws PurchaseException {
+        PurchaseException.check(tryUpdateProductQuantity(productId, quantity));
+    }
+
+    @Override
+    public void incrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryIncrementQuantity(productId));
+    }
+
+    @Override
+    public void decrementQuantity(String productId) throws PurchaseException {
+        PurchaseException.check(tryDecrementQuantity(productId));
+    }
+
+    @Override
+    public synchronized ErrorCode tryRemoveItem(String productId) {
+        CartSnapshot next = current.without(productId);
+        if (next == current) {
+            return ITEM_NOT_FOUND;
+        }
+        current = next;
+        return null;
+    }
+
+    @Override
+    public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+        if (quantity < 0) {
+            return QUANTITY_SHOULD_BE_GREATER_THAN_0;
+        }
+        return setQuantity(productId, quantity, 0);
+    }
+
+    @Override
+    public ErrorCode tryIncrementQuantity(String productId) {
+        return setQuantity(productId, -1, 1);
+    }
+
+    @Override
+    public ErrorCode tryDecrementQuantity(String productId) {
+        return setQuantity(productId, -1, -1);
+    }
+
+    /**
+     * Sets the line's quantity to {@code quantity}, or to the current one plus {@code delta} (never below 0).
+     */
+    private synchronized ErrorCode setQuantity(String productId, int quantity, int delta) {
+        CartSnapshot.Line line = current.get(productId);
+        if (line == null) {
+            return ITEM_NOT_FOUND;
+        }
+        int target = quantity >= 0 ? quantity : Math.max(0, line.getQuantity() + delta);
+        if (target != line.getQuantity()) {
+            current = current.with(line.getProduct(), target);
+        }
+        return null;
+    }
+
+    @Override
+    public String print() {
+        return current.print();
+    }
+
+    @Override
+    public <A extends Appendable> A printTo(A out) throws IOException {
+        return current.printTo(out);
+    }
+
+    @Override
+    public double price() {
+        return current.price();
+    }
+
+    @Override
+    public long priceInCents() {
+        return current.priceInCents();
+    }
+}
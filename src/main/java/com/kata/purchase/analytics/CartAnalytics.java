@@ -0,0 +1,253 @@
+package com.kata.purchase.analytics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregations over {@link CartColumns}, split by ranges of rows across a {@link ForkJoinPool}.
+ * Each task scans its rows in one tight loop over primitive arrays, summing into its own group array,
+ * and tasks are combined by adding their arrays, so no lock nor atomic is involved. Amounts are summed
+ * as long cents, which is exact, so parallel results are the same as sequential ones whatever the split.
+ * <p>
+ * Per product results are indexed by dictionary code.
+ */
+public class CartAnalytics {
+
+    public static final int HOURS_PER_DAY = 24;
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    /**
+     * Rows below which a task stops splitting.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    private final CartColumns columns;
+    private final ForkJoinPool pool;
+
+    public CartAnalytics(CartColumns columns) {
+        this(columns, ForkJoinPool.commonPool());
+    }
+
+    public CartAnalytics(CartColumns columns, ForkJoinPool pool) {
+        this.columns = columns;
+        this.pool = pool;
+    }
+
+    /**
+     * Units of each product across all carts.
+     */
+    public long[] quantityByProduct() {
+        return groupSum(columns.products, columns.codeCount, columns.quantities, null, null, columns.getLineCount());
+    }
+
+    /**
+     * Quantity times unit price of each product across all carts, in cents.
+     */
+    public long[] revenueByProduct() {
+        return groupSum(columns.products, columns.codeCount, columns.quantities, columns.pricesInCents, null, columns.getLineCount());
+    }
+
+    /**
+     * Value of every cart in cents, the way {@link com.kata.purchase.Cart#priceInCents()} was at capture.
+     */
+    public long[] cartTotals() {
+        long[] totals = new long[columns.getCartCount()];
+        pool.invoke(new CartTotals(totals, 0, totals.length));
+        return totals;
+    }
+
+    /**
+     * Average cart value in cents by hour of the day (UTC) of capture, 0 for an hour without carts.
+     */
+    public long[] averageCartValueByHour() {
+        int cartCount = columns.getCartCount();
+        int[] hours = new int[cartCount];
+        for (int c = 0; c < cartCount; c++) {
+            hours[c] = (int) Math.floorMod(Math.floorDiv(columns.capturedAtMillis[c], MILLIS_PER_HOUR), (long) HOURS_PER_DAY);
+        }
+        long[] sums = groupSum(hours, HOURS_PER_DAY, null, null, cartTotals(), cartCount);
+        long[] counts = groupSum(hours, HOURS_PER_DAY, null, null, null, cartCount);
+        long[] averages = new long[HOURS_PER_DAY];
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            averages[h] = counts[h] == 0 ? 0 : sums[h] / counts[h];
+        }
+        return averages;
+    }
+
+    /**
+     * Indexes of the {@code k} largest values (all of them when fewer), largest first, the lower index first on ties.
+     */
+    public static int[] top(long[] values, int k) {
+        int size = Math.min(k, values.length);
+        // min-heap of the best indexes seen, its root the one to drop first
+        int[] heap = new int[size];
+        int count = 0;
+        for (int i = 0; i < values.length && size > 0; i++) {
+            if (count < size) {
+                heap[count] = i;
+                siftUp(heap, count++, values);
+            } else if (before(i, heap[0], values)) {
+                heap[0] = i;
+                siftDown(heap, count, values);
+            }
+        }
+        int[] top = new int[count];
+        while (count > 0) {
+            top[--count] = heap[0];
+            heap[0] = heap[count];
+            siftDown(heap, count, values);
+        }
+        return top;
+    }
+
+    /**
+     * Whether index {@code a} ranks before index {@code b}.
+     */
+    private static boolean before(int a, int b, long[] values) {
+        return values[a] > values[b] || (values[a] == values[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int position, long[] values) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!before(heap[parent], heap[position], values)) {
+                return;
+            }
+            swap(heap, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int count, long[] values) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= count) {
+                return;
+            }
+            if (child + 1 < count && before(heap[child], heap[child + 1], values)) {
+                child++;
+            }
+            if (!before(heap[position], heap[child], values)) {
+                return;
+            }
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    /**
+     * Sums by key the rows' quantity, quantity times price, value, or 1 when all three are null.
+     */
+    private long[] groupSum(int[] keys, int groups, int[] quantities, long[] prices, long[] values, int rows) {
+        int threshold = Math.max(SEQUENTIAL_THRESHOLD, rows / (pool.getParallelism() * 4));
+        return pool.invoke(new GroupSum(keys, groups, quantities, prices, values, 0, rows, threshold));
+    }
+
+    private static final class GroupSum extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] keys;
+        private final int groups;
+        private final int[] quantities;
+        private final long[] prices;
+        private final long[] values;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        private GroupSum(int[] keys, int groups, int[] quantities, long[] prices, long[] values, int from, int to, int threshold) {
+            this.keys = keys;
+            this.groups = groups;
+            this.quantities = quantities;
+            this.prices = prices;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= threshold) {
+                return sum();
+            }
+            int middle = (from + to) >>> 1;
+            GroupSum left = new GroupSum(keys, groups, quantities, prices, values, from, middle, threshold);
+            left.fork();
+            long[] sums = new GroupSum(keys, groups, quantities, prices, values, middle, to, threshold).compute();
+            long[] leftSums = left.join();
+            for (int g = 0; g < groups; g++) {
+                sums[g] += leftSums[g];
+            }
+            return sums;
+        }
+
+        private long[] sum() {
+            long[] sums = new long[groups];
+            if (prices != null) {
+                for (int i = from; i < to; i++) {
+                    sums[keys[i]] += quantities[i] * prices[i];
+                }
+            } else if (quantities != null) {
+                for (int i = from; i < to; i++) {
+                    sums[keys[i]] += quantities[i];
+                }
+            } else if (values != null) {
+                for (int i = from; i < to; i++) {
+                    sums[keys[i]] += values[i];
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    sums[keys[i]]++;
+                }
+            }
+            return sums;
+        }
+    }
+
+    private final class CartTotals extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] totals;
+        private final int from;
+        private final int to;
+
+        private CartTotals(long[] totals, int from, int to) {
+            this.totals = totals;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (columns.cartOffsets[to] - columns.cartOffsets[from] <= SEQUENTIAL_THRESHOLD || to - from == 1) {
+                int[] quantities = columns.quantities;
+                long[] prices = columns.pricesInCents;
+                for (int c = from; c < to; c++) {
+                    long total = 0;
+                    for (int i = columns.cartOffsets[c], end = columns.cartOffsets[c + 1]; i < end; i++) {
+                        total += quantities[i] * prices[i];
+                    }
+                    totals[c] = total;
+                }
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            CartTotals left = new CartTotals(totals, from, middle);
+            left.fork();
+            new CartTotals(totals, middle, to).compute();
+            left.join();
+            return null;
+        }
+    }
+}
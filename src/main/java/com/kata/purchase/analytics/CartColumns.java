@@ -0,0 +1,115 @@
+package com.kata.purchase.analytics;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+import com.kata.purchase.ProductCatalog;
+
+import java.util.Arrays;
+
+import static com.kata.purchase.Money.NO_PRICE;
+
+/**
+ * Lines of many carts captured in primitive columns, for {@link CartAnalytics} to scan without touching
+ * a cart, an item or a boxed price: per line the product's code in a {@link ProductCatalog} used as
+ * dictionary, the quantity and the unit price in cents (0 for a line without price); per cart the
+ * capture time and the range of its lines, which are stored contiguously.
+ * A capture is immutable and independent of the carts it was taken from.
+ */
+public final class CartColumns {
+
+    private final ProductCatalog dictionary;
+    final int[] cartOffsets;
+    final long[] capturedAtMillis;
+    final int[] products;
+    final int[] quantities;
+    final long[] pricesInCents;
+    final int codeCount;
+
+    private CartColumns(CartColumnsBuilder builder) {
+        this.dictionary = builder.dictionary;
+        this.cartOffsets = Arrays.copyOf(builder.cartOffsets, builder.cartCount + 1);
+        this.capturedAtMillis = Arrays.copyOf(builder.capturedAtMillis, builder.cartCount);
+        this.products = Arrays.copyOf(builder.products, builder.lineCount);
+        this.quantities = Arrays.copyOf(builder.quantities, builder.lineCount);
+        this.pricesInCents = Arrays.copyOf(builder.pricesInCents, builder.lineCount);
+        this.codeCount = builder.codeCount;
+    }
+
+    public static class CartColumnsBuilder {
+        private final ProductCatalog dictionary;
+        private int[] cartOffsets = new int[17];
+        private long[] capturedAtMillis = new long[16];
+        private int[] products = new int[64];
+        private int[] quantities = new int[64];
+        private long[] pricesInCents = new long[64];
+        private int cartCount;
+        private int lineCount;
+        private int codeCount;
+
+        /**
+         * @param dictionary gives product ids their codes, registering the ids it does not know yet
+         */
+        public CartColumnsBuilder(ProductCatalog dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Appends the cart's current lines, in no particular order.
+         */
+        public CartColumnsBuilder add(Cart cart, long capturedAtMillis) {
+            if (cartCount == this.capturedAtMillis.length) {
+                this.capturedAtMillis = Arrays.copyOf(this.capturedAtMillis, cartCount * 2);
+                cartOffsets = Arrays.copyOf(cartOffsets, cartCount * 2 + 1);
+            }
+            ensureLineCapacity(lineCount + cart.getItems().size());
+            for (Item line : cart.getItems().values()) {
+                int code = code(line);
+                products[lineCount] = code;
+                codeCount = Math.max(codeCount, code + 1);
+                quantities[lineCount] = line.getQuantity();
+                pricesInCents[lineCount] = line.getPriceInCents() == NO_PRICE ? 0 : line.getPriceInCents();
+                lineCount++;
+            }
+            this.capturedAtMillis[cartCount++] = capturedAtMillis;
+            cartOffsets[cartCount] = lineCount;
+            return this;
+        }
+
+        private int code(Item line) {
+            int code = dictionary.code(line.getId());
+            if (code < 0) {
+                dictionary.intern(line.getProduct());
+                code = dictionary.code(line.getId());
+            }
+            return code;
+        }
+
+        private void ensureLineCapacity(int capacity) {
+            if (capacity > products.length) {
+                int length = Math.max(capacity, products.length * 2);
+                products = Arrays.copyOf(products, length);
+                quantities = Arrays.copyOf(quantities, length);
+                pricesInCents = Arrays.copyOf(pricesInCents, length);
+            }
+        }
+
+        public CartColumns build() {
+            return new CartColumns(this);
+        }
+    }
+
+    /**
+     * The catalog whose codes the product column holds, {@link ProductCatalog#get(int)} turning a code back into a product.
+     */
+    public ProductCatalog getDictionary() {
+        return dictionary;
+    }
+
+    public int getCartCount() {
+        return capturedAtMillis.length;
+    }
+
+    public int getLineCount() {
+        return products.length;
+    }
+}
@@ -6,7 +6,8 @@ public enum ErrorCode {
     ITEMS_SHOULD_NOT_NULL("Items could not be null"),
     ITEM_NOT_FOUND("Item could not be found in the car"),
     ITEM_NOT_VALID("Item could not be added, Item is not valid!"),
-    QUANTITY_SHOULD_BE_GREATER_THAN_0("Product quantity should be greater than 0");
+    QUANTITY_SHOULD_BE_GREATER_THAN_0("Product quantity should be greater than 0"),
+    OUT_OF_STOCK("Product stock is not enough for the requested quantity");
 
     private String message;
 
@@ -2,12 +2,32 @@ package com.kata.purchase.exception;
 
 public class PurchaseException extends Exception {
 
+    /**
+     * Whether exceptions built with {@link #PurchaseException(ErrorCode)} capture a stack trace,
+     * from the {@code purchase.exception.stackTrace} system property (true by default).
+     */
+    public static final boolean STACK_TRACES = Boolean.parseBoolean(System.getProperty("purchase.exception.stackTrace", "true"));
+
     private ErrorCode code;
 
     public PurchaseException(ErrorCode errorCode) {
+        this(errorCode, STACK_TRACES);
+    }
+
+    public PurchaseException(ErrorCode errorCode, boolean stackTrace) {
+        super(null, null, true, stackTrace);
         this.code = errorCode;
     }
 
+    /**
+     * Throws for the code returned by a non-throwing cart operation, does nothing for null.
+     */
+    public static void check(ErrorCode errorCode) throws PurchaseException {
+        if (errorCode != null) {
+            throw new PurchaseException(errorCode);
+        }
+    }
+
     @Override
     public String getMessage() {
         return code.getMessage();
@@ -0,0 +1,38 @@
+package com.kata.purchase.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes metrics as text lines, {@code name value} for counters and
+ * {@code name count=.. p50=.. p99=.. p999=..} for histograms.
+ */
+public class AppendableExporter implements MetricsExporter {
+
+    private final Appendable out;
+
+    public AppendableExporter(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public void counter(String name, long value) {
+        line(name + ' ' + value);
+    }
+
+    @Override
+    public void histogram(String name, Histogram histogram) {
+        line(name + " count=" + histogram.getCount()
+                + " p50=" + histogram.valueAtPercentile(50)
+                + " p99=" + histogram.valueAtPercentile(99)
+                + " p999=" + histogram.valueAtPercentile(99.9));
+    }
+
+    private void line(String line) {
+        try {
+            out.append(line).append(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.kata.purchase.metrics;
+
+/**
+ * Events of the cart hot paths. {@link #CURRENT} is chosen once from the {@code purchase.metrics} system
+ * property (false by default): when disabled it is {@link NoopCartMetrics}, whose empty methods the JIT
+ * inlines away together with the timing code guarded by {@link #isEnabled()}.
+ */
+public interface CartMetrics {
+
+    CartMetrics CURRENT = Boolean.getBoolean("purchase.metrics") ? new RecordingCartMetrics() : NoopCartMetrics.INSTANCE;
+
+    boolean isEnabled();
+
+    /**
+     * An added item became a new line.
+     */
+    void lineInserted();
+
+    /**
+     * An added item was merged into the line of the same product.
+     */
+    void lineMerged();
+
+    /**
+     * An operation missed its line and gave {@code ITEM_NOT_FOUND}.
+     */
+    void lineNotFound();
+
+    /**
+     * The cart has {@code lines} lines after an add or a remove.
+     */
+    void sized(int lines);
+
+    void priced(long nanos);
+
+    void printed(long nanos);
+
+    /**
+     * Writes every counter and histogram, nothing when disabled.
+     */
+    void exportTo(MetricsExporter exporter);
+}
@@ -0,0 +1,11 @@
+package com.kata.purchase.metrics;
+
+/**
+ * Destination of {@link CartMetrics#exportTo(MetricsExporter)}, e.g. a monitoring agent.
+ */
+public interface MetricsExporter {
+
+    void counter(String name, long value);
+
+    void histogram(String name, Histogram histogram);
+}
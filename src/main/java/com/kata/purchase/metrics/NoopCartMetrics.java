@@ -0,0 +1,45 @@
+package com.kata.purchase.metrics;
+
+/**
+ * Metrics switched off: every method does nothing.
+ */
+public final class NoopCartMetrics implements CartMetrics {
+
+    public static final NoopCartMetrics INSTANCE = new NoopCartMetrics();
+
+    private NoopCartMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void lineInserted() {
+    }
+
+    @Override
+    public void lineMerged() {
+    }
+
+    @Override
+    public void lineNotFound() {
+    }
+
+    @Override
+    public void sized(int lines) {
+    }
+
+    @Override
+    public void priced(long nanos) {
+    }
+
+    @Override
+    public void printed(long nanos) {
+    }
+
+    @Override
+    public void exportTo(MetricsExporter exporter) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.kata.purchase.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics switched on: counters are {@link LongAdder}s, so threads updating them do not contend,
+ * and latencies and sizes go to {@link Histogram}s.
+ */
+public class RecordingCartMetrics implements CartMetrics {
+
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final Histogram priceNanos = new Histogram();
+    private final Histogram printNanos = new Histogram();
+    private final Histogram lines = new Histogram();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void lineInserted() {
+        inserted.increment();
+    }
+
+    @Override
+    public void lineMerged() {
+        merged.increment();
+    }
+
+    @Override
+    public void lineNotFound() {
+        notFound.increment();
+    }
+
+    @Override
+    public void sized(int lines) {
+        this.lines.record(lines);
+    }
+
+    @Override
+    public void priced(long nanos) {
+        priceNanos.record(nanos);
+    }
+
+    @Override
+    public void printed(long nanos) {
+        printNanos.record(nanos);
+    }
+
+    @Override
+    public void exportTo(MetricsExporter exporter) {
+        exporter.counter("cart.line.inserted", inserted.sum());
+        exporter.counter("cart.line.merged", merged.sum());
+        exporter.counter("cart.line.notFound", notFound.sum());
+        exporter.histogram("cart.price.nanos", priceNanos);
+        exporter.histogram("cart.print.nanos", printNanos);
+        exporter.histogram("cart.lines", lines);
+    }
+}
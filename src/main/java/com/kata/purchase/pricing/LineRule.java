@@ -0,0 +1,16 @@
+package com.kata.purchase.pricing;
+
+/**
+ * Rule pricing the line of one product, applied after the rules registered before it for the same product.
+ */
+@FunctionalInterface
+public interface LineRule {
+
+    /**
+     * @param quantity          units on the line
+     * @param unitPriceInCents  catalog price of one unit
+     * @param amountInCents     line amount left by the previous rules (quantity * unit price for the first one)
+     * @return the new line amount, between 0 and {@code amountInCents}
+     */
+    long apply(int quantity, long unitPriceInCents, long amountInCents);
+}
@@ -0,0 +1,37 @@
+package com.kata.purchase.pricing;
+
+import lombok.Getter;
+
+/**
+ * Amounts of a cart priced by a {@link PricingPlan}, in cents:
+ * {@code total = subtotal - lineDiscount - bundleDiscount - cartDiscount + vat}.
+ */
+@Getter
+public class PriceBreakdown {
+
+    private final long subtotalInCents;
+    private final long lineDiscountInCents;
+    private final long bundleDiscountInCents;
+    private final long cartDiscountInCents;
+    private final long vatInCents;
+
+    PriceBreakdown(long subtotalInCents, long lineDiscountInCents, long bundleDiscountInCents,
+                   long cartDiscountInCents, long vatInCents) {
+        this.subtotalInCents = subtotalInCents;
+        this.lineDiscountInCents = lineDiscountInCents;
+        this.bundleDiscountInCents = bundleDiscountInCents;
+        this.cartDiscountInCents = cartDiscountInCents;
+        this.vatInCents = vatInCents;
+    }
+
+    /**
+     * Amount before VAT.
+     */
+    public long getNetInCents() {
+        return subtotalInCents - lineDiscountInCents - bundleDiscountInCents - cartDiscountInCents;
+    }
+
+    public long getTotalInCents() {
+        return getNetInCents() + vatInCents;
+    }
+}
@@ -0,0 +1,230 @@
+package com.kata.purchase.pricing;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+
+import java.util.*;
+
+import static com.kata.purchase.Money.NO_PRICE;
+
+/**
+ * Promotions and taxes compiled for pricing carts in one pass over their lines. Stages, in order:
+ * <ol>
+ * <li>line rules of each product ({@link LineRule}, percent or amount off, multi-buy), in registration order;</li>
+ * <li>bundles: a fixed discount per complete set of their products, a unit counting for one bundle at most,
+ * bundles being filled in registration order;</li>
+ * <li>cart threshold: the percent off of the highest threshold the amount left reaches;</li>
+ * <li>VAT added on top of the amount left.</li>
+ * </ol>
+ * Rules are indexed by product id, so pricing a line costs one lookup whatever the number of rules.
+ * Percentages are in basis points (1/100 of a percent), rounded half up to the cent.
+ * A plan is immutable and can price carts from several threads.
+ */
+public class PricingPlan {
+
+    private static final LineRule[] NO_RULES = {};
+    private static final int[] NO_BUNDLES = {};
+
+    private final Map<String, ProductRules> byProduct;
+    private final Bundle[] bundles;
+    private final long[] thresholdsInCents;
+    private final int[] thresholdBasisPoints;
+    private final int vatBasisPoints;
+
+    private PricingPlan(PricingPlanBuilder builder) {
+        Map<String, List<LineRule>> lineRules = builder.lineRules;
+        Map<String, List<Integer>> bundlesByProduct = new HashMap<>();
+        for (int b = 0; b < builder.bundles.size(); b++) {
+            for (String productId : builder.bundles.get(b).productIds) {
+                bundlesByProduct.computeIfAbsent(productId, (id) -> new ArrayList<>()).add(b);
+            }
+        }
+        Set<String> productIds = new HashSet<>(lineRules.keySet());
+        productIds.addAll(bundlesByProduct.keySet());
+        this.byProduct = new HashMap<>(productIds.size() * 4 / 3 + 1);
+        for (String productId : productIds) {
+            List<LineRule> rules = lineRules.get(productId);
+            List<Integer> productBundles = bundlesByProduct.get(productId);
+            byProduct.put(productId, new ProductRules(
+                    rules == null ? NO_RULES : rules.toArray(NO_RULES),
+                    productBundles == null ? NO_BUNDLES : productBundles.stream().mapToInt(Integer::intValue).toArray()));
+        }
+        this.bundles = builder.bundles.toArray(new Bundle[0]);
+        this.thresholdsInCents = new long[builder.thresholds.size()];
+        this.thresholdBasisPoints = new int[builder.thresholds.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> threshold : builder.thresholds.entrySet()) {
+            thresholdsInCents[i] = threshold.getKey();
+            thresholdBasisPoints[i++] = threshold.getValue();
+        }
+        this.vatBasisPoints = builder.vatBasisPoints;
+    }
+
+    public PriceBreakdown price(Cart cart) {
+        return price(cart.getItems().values());
+    }
+
+    public PriceBreakdown price(Collection<Item> lines) {
+        long subtotal = 0;
+        long lineDiscount = 0;
+        Map<String, Integer> bundleUnits = null;
+        BitSet touchedBundles = null;
+        for (Item line : lines) {
+            long unitPriceInCents = line.getPriceInCents();
+            if (unitPriceInCents == NO_PRICE) {
+                continue;
+            }
+            int quantity = line.getQuantity();
+            long amount = quantity * unitPriceInCents;
+            subtotal += amount;
+            ProductRules rules = byProduct.get(line.getId());
+            if (rules == null) {
+                continue;
+            }
+            long priced = amount;
+            for (LineRule rule : rules.lineRules) {
+                priced = Math.max(0, Math.min(priced, rule.apply(quantity, unitPriceInCents, priced)));
+            }
+            lineDiscount += amount - priced;
+            if (rules.bundles.length > 0) {
+                if (bundleUnits == null) {
+                    bundleUnits = new HashMap<>();
+                    touchedBundles = new BitSet(bundles.length);
+                }
+                bundleUnits.merge(line.getId(), quantity, Integer::sum);
+                for (int bundle : rules.bundles) {
+                    touchedBundles.set(bundle);
+                }
+            }
+        }
+        long bundleDiscount = 0;
+        if (touchedBundles != null) {
+            for (int b = touchedBundles.nextSetBit(0); b >= 0; b = touchedBundles.nextSetBit(b + 1)) {
+                bundleDiscount += bundles[b].fill(bundleUnits);
+            }
+            bundleDiscount = Math.min(bundleDiscount, subtotal - lineDiscount);
+        }
+        long net = subtotal - lineDiscount - bundleDiscount;
+        long cartDiscount = percentOf(net, thresholdBasisPoints(net));
+        long vat = percentOf(net - cartDiscount, vatBasisPoints);
+        return new PriceBreakdown(subtotal, lineDiscount, bundleDiscount, cartDiscount, vat);
+    }
+
+    private int thresholdBasisPoints(long amountInCents) {
+        int index = Arrays.binarySearch(thresholdsInCents, amountInCents);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? 0 : thresholdBasisPoints[index];
+    }
+
+    static long percentOf(long amountInCents, int basisPoints) {
+        return (amountInCents * basisPoints + 5_000) / 10_000;
+    }
+
+    private static final class ProductRules {
+        private final LineRule[] lineRules;
+        private final int[] bundles;
+
+        private ProductRules(LineRule[] lineRules, int[] bundles) {
+            this.lineRules = lineRules;
+            this.bundles = bundles;
+        }
+    }
+
+    private static final class Bundle {
+        private final String[] productIds;
+        private final long discountInCents;
+
+        private Bundle(String[] productIds, long discountInCents) {
+            this.productIds = productIds;
+            this.discountInCents = discountInCents;
+        }
+
+        /**
+         * Takes as many complete sets as the units left allow and returns their discount.
+         */
+        private long fill(Map<String, Integer> units) {
+            int sets = Integer.MAX_VALUE;
+            for (String productId : productIds) {
+                sets = Math.min(sets, units.getOrDefault(productId, 0));
+            }
+            if (sets == 0) {
+                return 0;
+            }
+            for (String productId : productIds) {
+                units.merge(productId, -sets, Integer::sum);
+            }
+            return sets * discountInCents;
+        }
+    }
+
+    public static class PricingPlanBuilder {
+        private final Map<String, List<LineRule>> lineRules = new HashMap<>();
+        private final List<Bundle> bundles = new ArrayList<>();
+        private final TreeMap<Long, Integer> thresholds = new TreeMap<>();
+        private int vatBasisPoints;
+
+        public PricingPlanBuilder lineRule(String productId, LineRule rule) {
+            lineRules.computeIfAbsent(productId, (id) -> new ArrayList<>(1)).add(rule);
+            return this;
+        }
+
+        public PricingPlanBuilder percentOff(String productId, int basisPoints) {
+            return lineRule(productId, (quantity, unitPriceInCents, amountInCents) ->
+                    amountInCents - percentOf(amountInCents, basisPoints));
+        }
+
+        public PricingPlanBuilder amountOff(String productId, long centsPerUnit) {
+            return lineRule(productId, (quantity, unitPriceInCents, amountInCents) ->
+                    amountInCents - quantity * centsPerUnit);
+        }
+
+        /**
+         * Every {@code buy + free} units, {@code free} of them cost nothing ("3 for 2" is buy 2, free 1).
+         *
+         * @throws IllegalArgumentException when {@code buy} or {@code free} is lower than 1
+         */
+        public PricingPlanBuilder multiBuy(String productId, int buy, int free) {
+            if (buy < 1 || free < 1) {
+                throw new IllegalArgumentException("Multi-buy units to buy and free units should be greater than 0");
+            }
+            int group = buy + free;
+            return lineRule(productId, (quantity, unitPriceInCents, amountInCents) ->
+                    quantity == 0 ? amountInCents : amountInCents - amountInCents * (quantity / group * free) / quantity);
+        }
+
+        /**
+         * {@code discountInCents} off each complete set of one unit of every product.
+         *
+         * @throws IllegalArgumentException when a product id is listed twice
+         */
+        public PricingPlanBuilder bundle(long discountInCents, String... productIds) {
+            Set<String> distinct = new HashSet<>();
+            for (String productId : productIds) {
+                if (!distinct.add(productId)) {
+                    throw new IllegalArgumentException("Bundle lists product " + productId + " twice");
+                }
+            }
+            bundles.add(new Bundle(productIds.clone(), discountInCents));
+            return this;
+        }
+
+        /**
+         * Percent off the cart once the amount left by line rules and bundles reaches the threshold.
+         */
+        public PricingPlanBuilder cartThreshold(long thresholdInCents, int basisPoints) {
+            thresholds.put(thresholdInCents, basisPoints);
+            return this;
+        }
+
+        public PricingPlanBuilder vat(int basisPoints) {
+            this.vatBasisPoints = basisPoints;
+            return this;
+        }
+
+        public PricingPlan build() {
+            return new PricingPlan(this);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.kata.purchase.Products.product;
+import static java.nio.file.StandardOpenOption.*;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CartCodecTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void given_cart_when_encode_and_decode_then_restore_same_lines_print_and_price() throws PurchaseException {
+        Cart cart = new Cart();
+        cart.add(new Item(product("ID1", "LABEL1", 250, false), 3),
+                new Item(product("ID2", null, 1999, true), 1),
+                new Item(product("ID3", "Cr\u00e8me \uD83C\uDF81", 5, true), 120_000));
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        CartEncoder encoder = new CartEncoder();
+        encoder.writeHeader(buffer);
+        encoder.write(cart, buffer);
+        buffer.flip();
+
+        CartDecoder decoder = new CartDecoder();
+        decoder.readHeader(buffer);
+        assertTrue(decoder.hasCart(buffer));
+        Cart restored = decoder.read(buffer);
+
+        assertThat(restored.print(), is(cart.print()));
+        assertThat(restored.priceInCents(), is(cart.priceInCents()));
+        assertThat(buffer.hasRemaining(), is(false));
+    }
+
+    @Test
+    public void given_1000_carts_sharing_products_when_written_to_file_and_read_back_then_carts_are_restored_and_share_products() throws Exception {
+        List<Cart> carts = new ArrayList<>();
+        for (int c = 0; c < 1000; c++) {
+            Cart cart = new Cart();
+            for (int p = 0; p < 5; p++) {
+                int index = (c + p) % 50;
+                cart.add(new Item(product("ID" + index, "LABEL" + index, 100 + index, index % 2 == 0), 1 + c % 7));
+            }
+            carts.add(cart);
+        }
+        Path file = folder.newFile("carts.bin").toPath();
+
+        try (FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+            assertThat(new CartEncoder().write(carts, channel), is(1000));
+        }
+        List<Cart> restored = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            assertThat(new CartDecoder().read(channel, restored::add), is(1000));
+        }
+
+        for (int c = 0; c < 1000; c++) {
+            assertThat(restored.get(c).print(), is(carts.get(c).print()));
+        }
+        assertTrue(restored.get(0).getItems().get("ID1").getProduct() == restored.get(1).getItems().get("ID1").getProduct());
+    }
+
+    @Test
+    public void given_product_price_changed_between_2_carts_when_encode_and_decode_then_each_cart_keeps_its_price() throws PurchaseException {
+        Cart before = new Cart();
+        before.add(new Item(product("ID1", "LABEL1", 100, true)));
+        Cart after = new Cart();
+        after.add(new Item(product("ID1", "LABEL1", 150, true)));
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        CartEncoder encoder = new CartEncoder();
+        encoder.writeHeader(buffer);
+        encoder.write(before, buffer);
+        encoder.write(after, buffer);
+        buffer.flip();
+
+        CartDecoder decoder = new CartDecoder();
+        decoder.readHeader(buffer);
+
+        assertThat(decoder.read(buffer).priceInCents(), is(100L));
+        assertThat(decoder.read(buffer).priceInCents(), is(150L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void given_stream_of_unknown_version_when_readHeader_then_throw_illegal_argument_exception() {
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        buffer.putInt(CartEncoder.MAGIC).put((byte) 99).flip();
+
+        new CartDecoder().readHeader(buffer);
+    }
+
+    @Test
+    public void given_empty_file_when_read_then_throw_io_exception() throws IOException {
+        Path file = folder.newFile("empty.bin").toPath();
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            new CartDecoder().read(channel, (cart) -> {
+            });
+            assertTrue(false);
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Missing cart stream header"));
+        }
+    }
+}
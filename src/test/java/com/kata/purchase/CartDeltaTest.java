@@ -0,0 +1,110 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.ITEM_NOT_FOUND;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CartDeltaTest {
+
+    private Cart stored;
+    private Cart guest;
+
+    @Before
+    public void setUp() throws PurchaseException {
+        stored = new Cart();
+        stored.add(new Item(product("ID1", 100), 2), new Item(product("ID2", 200), 5), new Item(product("ID3", 300), 1));
+        guest = new Cart();
+        guest.add(new Item(product("ID2", 200), 3), new Item(product("ID3", 350), 4), new Item(product("ID4", 400), 1));
+    }
+
+    @Test
+    public void given_two_carts_when_diff_applied_to_base_then_base_becomes_target() throws PurchaseException {
+        CartDelta delta = CartDelta.diff(stored, guest);
+
+        delta.applyTo(stored);
+
+        assertThat(delta.size(), is(4));
+        assertThat(stored.print(), is(guest.print()));
+        assertThat(stored.priceInCents(), is(guest.priceInCents()));
+    }
+
+    @Test
+    public void given_same_carts_when_diff_then_delta_is_empty() {
+        assertThat(CartDelta.diff(stored, stored).isEmpty(), is(true));
+    }
+
+    @Test
+    public void given_sum_policy_when_merge_then_add_quantities_and_keep_stored_products() throws PurchaseException {
+        CartDelta.merge(stored, guest, MergePolicy.SUM).applyTo(stored);
+
+        assertThat(quantity(stored, "ID1"), is(2));
+        assertThat(quantity(stored, "ID2"), is(8));
+        assertThat(quantity(stored, "ID3"), is(5));
+        assertThat(quantity(stored, "ID4"), is(1));
+        assertThat(stored.getItems().get("ID3").getPriceInCents(), is(300L));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void given_sum_beyond_int_range_when_merge_with_sum_policy_then_throw_arithmetic_exception() throws PurchaseException {
+        guest.updateProductQuantity("ID2", Integer.MAX_VALUE);
+
+        CartDelta.merge(stored, guest, MergePolicy.SUM);
+    }
+
+    @Test
+    public void given_max_policy_when_merge_then_keep_larger_quantities() throws PurchaseException {
+        CartDelta.merge(stored, guest, MergePolicy.MAX).applyTo(stored);
+
+        assertThat(quantity(stored, "ID2"), is(5));
+        assertThat(quantity(stored, "ID3"), is(4));
+    }
+
+    @Test
+    public void given_prefer_newer_policy_when_merge_then_take_guest_lines() throws PurchaseException {
+        CartDelta.merge(stored, guest, MergePolicy.PREFER_NEWER).applyTo(stored);
+
+        assertThat(quantity(stored, "ID1"), is(2));
+        assertThat(quantity(stored, "ID2"), is(3));
+        assertThat(quantity(stored, "ID3"), is(4));
+        assertThat(stored.getItems().get("ID3").getPriceInCents(), is(350L));
+        assertThat(stored.priceInCents(), is(200L + 600L + 1400L + 400L));
+    }
+
+    @Test
+    public void given_delta_when_written_and_read_back_then_it_applies_the_same_changes() throws PurchaseException {
+        Cart copy = new Cart();
+        copy.add(new Item(product("ID1", 100), 2), new Item(product("ID2", 200), 5), new Item(product("ID3", 300), 1));
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        CartDelta.diff(stored, guest).writeTo(buffer);
+        buffer.flip();
+
+        CartDelta.read(buffer).applyTo(copy);
+
+        assertThat(buffer.hasRemaining(), is(false));
+        assertThat(copy.print(), is(guest.print()));
+    }
+
+    @Test
+    public void given_delta_on_missing_line_when_applied_then_throw_item_not_found() throws PurchaseException {
+        CartDelta delta = CartDelta.diff(stored, guest);
+
+        try {
+            delta.applyTo(new Cart());
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_FOUND));
+        }
+    }
+
+    private static int quantity(Cart cart, String productId) {
+        return cart.getItems().get(productId).getQuantity();
+    }
+}
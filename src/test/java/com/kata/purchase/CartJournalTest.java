@@ -0,0 +1,136 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.kata.purchase.Products.product;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CartJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void given_journaled_mutations_when_journal_is_reopened_then_carts_are_rebuilt() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Cart cart1 = new Cart();
+        Cart cart2 = new Cart();
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog())) {
+            JournaledCart journaled1 = journal.journaled(1, cart1);
+            JournaledCart journaled2 = journal.journaled(2, cart2);
+            journaled1.add(new Item(product("ID1", 200), 2), new Item(product("ID2", 300)), new Item(product("ID1", 200)));
+            journaled1.incrementQuantity("ID2");
+            journaled1.decrementQuantity("ID1");
+            journaled2.add(new Item(product("ID3", 400), 7));
+            journaled2.updateProductQuantity("ID3", 4);
+            journaled2.add(new Item(product("ID4", 500)));
+            journaled2.removeItem("ID4");
+            journal.sync();
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog())) {
+            Map<Long, Cart> carts = journal.getRecoveredCarts();
+
+            assertThat(carts.size(), is(2));
+            assertThat(carts.get(1L).print(), is(cart1.print()));
+            assertThat(carts.get(2L).print(), is(cart2.print()));
+            assertThat(carts.get(2L).priceInCents(), is(1600L));
+        }
+    }
+
+    @Test
+    public void given_mutation_failing_when_journaled_then_nothing_is_replayed_for_it() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog())) {
+            JournaledCart journaled = journal.journaled(1, new Cart());
+            journaled.add(new Item(product("ID1", 200)));
+            journaled.tryIncrementQuantity("UNKNOWN");
+            journaled.tryUpdateProductQuantity("ID1", -2);
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog())) {
+            assertThat(journal.getRecoveredCarts().get(1L).getItems().get("ID1").getQuantity(), is(1));
+        }
+    }
+
+    @Test
+    public void given_small_segments_and_snapshot_when_reopened_then_carts_are_rebuilt_from_snapshot_and_later_segments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Map<Long, Cart> carts = new HashMap<>();
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog(), 1024, 1)) {
+            for (long id = 0; id < 20; id++) {
+                Cart cart = new Cart();
+                carts.put(id, cart);
+                journal.journaled(id, cart).add(new Item(product("ID" + id % 5, 100 * (id % 5 + 1)), 3), new Item(product("ID5", 600)));
+            }
+            journal.snapshot(carts);
+            for (long id = 0; id < 20; id++) {
+                journal.journaled(id, carts.get(id)).incrementQuantity("ID5");
+            }
+        }
+
+        assertThat(files(directory, "snapshot-").size(), is(1));
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog(), 1024, 1)) {
+            Map<Long, Cart> recovered = journal.getRecoveredCarts();
+
+            assertThat(recovered.size(), is(20));
+            for (long id = 0; id < 20; id++) {
+                assertThat(recovered.get(id).print(), is(carts.get(id).print()));
+            }
+        }
+    }
+
+    @Test
+    public void given_torn_record_at_the_end_of_a_segment_when_reopened_then_replay_stops_before_it() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog(), 4096, 1)) {
+            JournaledCart journaled = journal.journaled(1, new Cart());
+            journaled.add(new Item(product("ID1", 200)));
+            journaled.incrementQuantity("ID1");
+        }
+        Path segment = files(directory, "journal-").get(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(CartJournal.RECORD_SIZE);
+            torn.putLong(1).putInt(0).putInt(0).put((byte) 4).flip();
+            channel.write(torn, firstFreeRecord(segment));
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, new ProductCatalog(), 4096, 1)) {
+            assertThat(journal.getRecoveredCarts().get(1L).getItems().get("ID1").getQuantity(), is(2));
+        }
+        assertThat(Files.size(segment), is(size));
+    }
+
+    private static long firstFreeRecord(Path segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        for (int offset = bytes.length - CartJournal.RECORD_SIZE; offset >= 0; offset -= 8) {
+            if (bytes[offset + 16] != 0) {
+                return offset + CartJournal.RECORD_SIZE;
+            }
+        }
+        return 0;
+    }
+
+    private static List<Path> files(Path directory, String prefix) throws IOException {
+        return Files.list(directory)
+                .filter((file) -> file.getFileName().toString().startsWith(prefix))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,89 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.kata.purchase.Products.product;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CartRepricerTest {
+
+    @Test
+    public void given_new_price_table_when_price_cart_then_use_table_prices_and_keep_unknown_ones() throws PurchaseException {
+        Cart cart = new Cart();
+        cart.add(new Item(product("ID1", 100), 2), new Item(product("ID2", 300), 1));
+        ProductCatalog priceTable = new ProductCatalog();
+        priceTable.intern(product("ID1", 150));
+
+        CartRepricer repricer = new CartRepricer(priceTable);
+
+        assertThat(repricer.priceInCents(cart), is(2 * 150L + 300L));
+        assertThat(cart.priceInCents(), is(500L));
+    }
+
+    @Test
+    public void given_many_carts_when_priced_in_parallel_then_totals_match_sequential_ones() throws PurchaseException {
+        Random random = new Random(3);
+        List<Cart> carts = carts(random, 5000);
+        ProductCatalog priceTable = new ProductCatalog();
+        for (int p = 0; p < 100; p++) {
+            priceTable.intern(product("ID" + p, 1 + random.nextInt(100_000)));
+        }
+        CartRepricer sequential = new CartRepricer(priceTable, new ForkJoinPool(1));
+        CartRepricer parallel = new CartRepricer(priceTable, new ForkJoinPool(8));
+        long[] expected = new long[carts.size()];
+        long[] totals = new long[carts.size()];
+
+        long expectedSum = sequential.priceInCents(carts, expected);
+        long sum = parallel.priceInCents(carts, totals);
+
+        assertThat(sum, is(expectedSum));
+        assertThat(Arrays.equals(totals, expected), is(true));
+        for (int i = 0; i < carts.size(); i += 97) {
+            assertThat(totals[i], is(sequential.priceInCents(carts.get(i))));
+        }
+    }
+
+    @Test
+    public void given_carts_sharing_private_products_when_repriced_then_carts_follow_table_prices() throws PurchaseException {
+        Random random = new Random(5);
+        List<Cart> carts = carts(random, 2000);
+        ProductCatalog priceTable = new ProductCatalog();
+        for (int p = 0; p < 100; p += 2) {
+            priceTable.intern(product("ID" + p, 7));
+        }
+        CartRepricer repricer = new CartRepricer(priceTable, new ForkJoinPool(8));
+        long[] expected = new long[carts.size()];
+        long expectedSum = repricer.priceInCents(carts, expected);
+
+        long sum = repricer.reprice(carts);
+
+        assertThat(sum, is(expectedSum));
+        for (int i = 0; i < carts.size(); i++) {
+            assertThat(carts.get(i).priceInCents(), is(expected[i]));
+        }
+    }
+
+    private static List<Cart> carts(Random random, int count) throws PurchaseException {
+        Product[] products = new Product[100];
+        for (int p = 0; p < products.length; p++) {
+            products[p] = product("ID" + p, 1 + random.nextInt(100_000));
+        }
+        List<Cart> carts = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            Cart cart = new Cart();
+            for (int l = 0; l < 10; l++) {
+                cart.add(new Item(products[random.nextInt(products.length)], 1 + random.nextInt(20)));
+            }
+            carts.add(cart);
+        }
+        return carts;
+    }
+}
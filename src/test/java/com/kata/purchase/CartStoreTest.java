@@ -0,0 +1,190 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CartStoreTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final Map<String, Cart> spilled = new LinkedHashMap<>();
+
+    private CartStore store(long maximumSize, long timeToIdleSeconds) {
+        return new CartStore.CartStoreBuilder()
+                .maximumSize(maximumSize)
+                .timeToIdle(timeToIdleSeconds, TimeUnit.SECONDS)
+                .segments(1)
+                .clock(now::get)
+                .spill(spilled::put)
+                .build();
+    }
+
+    @Test
+    public void given_unknown_session_when_get_then_return_null_and_count_miss() {
+        CartStore store = store(10, 60);
+
+        assertThat(store.get("S1"), is(nullValue()));
+        assertThat(store.getMisses(), is(1L));
+        assertThat(store.getHits(), is(0L));
+    }
+
+    @Test
+    public void given_created_cart_when_get_then_return_same_cart_and_count_hit() {
+        CartStore store = store(10, 60);
+
+        Cart cart = store.getOrCreate("S1");
+
+        assertThat(store.get("S1"), is(sameInstance(cart)));
+        assertThat(store.getOrCreate("S1"), is(sameInstance(cart)));
+        assertThat(store.getMisses(), is(1L));
+        assertThat(store.getHits(), is(2L));
+        assertThat(store.size(), is(1L));
+    }
+
+    @Test
+    public void given_full_store_when_put_then_spill_least_recently_used_cart() {
+        CartStore store = store(2, 60);
+        Cart first = new Cart();
+        store.put("S1", first);
+        store.put("S2", new Cart());
+        store.get("S1");
+
+        store.put("S3", new Cart());
+
+        assertThat(spilled.keySet(), contains("S2"));
+        assertThat(store.get("S1"), is(sameInstance(first)));
+        assertThat(store.get("S2"), is(nullValue()));
+        assertThat(store.getEvictions(), is(1L));
+        assertThat(store.size(), is(2L));
+    }
+
+    @Test
+    public void given_default_store_when_create_many_carts_then_evict_none() {
+        CartStore store = new CartStore.CartStoreBuilder().spill(spilled::put).build();
+
+        for (int i = 0; i < 10_000; i++) {
+            store.getOrCreate("S" + i);
+        }
+
+        assertThat(store.size(), is(10_000L));
+        assertThat(store.getEvictions(), is(0L));
+    }
+
+    @Test
+    public void given_size_beyond_int_range_when_create_carts_then_evict_none() {
+        CartStore store = new CartStore.CartStoreBuilder().maximumSize(1L << 38).segments(1).spill(spilled::put).build();
+
+        Cart cart = store.getOrCreate("S1");
+        store.getOrCreate("S2");
+
+        assertThat(store.get("S1"), is(sameInstance(cart)));
+        assertThat(store.size(), is(2L));
+        assertThat(spilled.isEmpty(), is(true));
+    }
+
+    @Test
+    public void given_stored_cart_when_put_another_cart_for_session_then_spill_replaced_cart() {
+        CartStore store = store(10, 60);
+        Cart first = new Cart();
+        store.put("S1", first);
+        store.put("S1", first);
+
+        store.put("S1", new Cart());
+
+        assertThat(spilled.get("S1"), is(sameInstance(first)));
+        assertThat(store.getEvictions(), is(1L));
+        assertThat(store.size(), is(1L));
+    }
+
+    @Test
+    public void given_idle_cart_when_get_then_spill_it_and_count_miss() {
+        CartStore store = store(10, 60);
+        Cart cart = store.getOrCreate("S1");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        assertThat(store.get("S1"), is(nullValue()));
+        assertThat(spilled.get("S1"), is(sameInstance(cart)));
+        assertThat(store.getMisses(), is(2L));
+        assertThat(store.getEvictions(), is(1L));
+    }
+
+    @Test
+    public void given_recently_read_cart_when_evict_expired_then_keep_it_and_spill_the_idle_ones() {
+        CartStore store = store(10, 60);
+        store.put("S1", new Cart());
+        store.put("S2", new Cart());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        store.get("S1");
+        store.put("S3", new Cart());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(40));
+
+        assertThat(store.evictExpired(), is(1));
+
+        assertThat(spilled.keySet(), contains("S2"));
+        assertThat(store.size(), is(2L));
+    }
+
+    @Test
+    public void given_removed_cart_when_evict_then_it_is_not_spilled() {
+        CartStore store = store(1, 60);
+        store.put("S1", new Cart());
+
+        assertThat(store.remove("S1"), is(notNullValue()));
+        store.put("S2", new Cart());
+
+        assertThat(spilled.isEmpty(), is(true));
+        assertThat(store.getEvictions(), is(0L));
+    }
+
+    @Test
+    public void given_more_segments_than_maximum_size_when_many_sessions_then_size_stays_within_maximum() {
+        CartStore store = new CartStore.CartStoreBuilder()
+                .maximumSize(10)
+                .segments(64)
+                .spill(spilled::put)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            store.getOrCreate("S" + i);
+        }
+
+        assertThat(store.size(), is(lessThanOrEqualTo(10L)));
+        assertThat(store.getEvictions(), is(1000L - store.size()));
+    }
+
+    @Test
+    public void given_binary_spill_when_carts_are_evicted_then_they_can_be_decoded() throws PurchaseException {
+        ByteBuffer file = ByteBuffer.allocate(1024);
+        CartEncoder encoder = new CartEncoder();
+        encoder.writeHeader(file);
+        List<String> sessions = new ArrayList<>();
+        CartStore store = new CartStore.CartStoreBuilder()
+                .maximumSize(1)
+                .segments(1)
+                .spill((sessionId, cart) -> {
+                    sessions.add(sessionId);
+                    encoder.write(cart, file);
+                })
+                .build();
+        Cart cart = store.getOrCreate("S1");
+        cart.add(new Item(new Product.ProductBuilder("ID1").label("LABEL1").price(2.5).available(true).build(), 3));
+
+        store.getOrCreate("S2");
+
+        file.flip();
+        CartDecoder decoder = new CartDecoder();
+        decoder.readHeader(file);
+        assertThat(sessions, contains("S1"));
+        assertThat(decoder.read(file).print(), is(cart.print()));
+    }
+}
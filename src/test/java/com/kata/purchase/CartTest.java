@@ -5,14 +5,20 @@ import com.kata.purchase.exception.PurchaseException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.kata.purchase.Cart.LINE_SEPARATOR;
 import static com.kata.purchase.exception.ErrorCode.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CartTest {
 
@@ -316,4 +322,273 @@ public class CartTest {
         assertThat(price, is(95D));
     }
 
+    @Test
+    public void given_cart_has_item_with_2_products_with_price_10_when_item_quantity_set_directly_to_5_then_price_return_50() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(10D)
+                .build();
+        Item item1 = new Item(product1, 2);
+        cart.add(item1);
+
+        cart.getItems().get("ID1").setQuantity(5);
+
+        assertThat(cart.price(), is(50D));
+    }
+
+    @Test
+    public void given_cart_has_2_items_when_setItems_with_its_own_items_then_cart_is_unchanged() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .price(10D)
+                .build();
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("LABEL2")
+                .price(25D)
+                .build();
+        cart.add(new Item(product1, 2), new Item(product2, 3));
+
+        cart.setItems(cart.getItems());
+
+        assertThat(cart.getItems().size(), is(2));
+        assertThat(cart.price(), is(95D));
+        cart.incrementQuantity("ID1");
+        assertThat(cart.price(), is(105D));
+    }
+
+    @Test
+    public void given_item_with_max_quantity_when_quantity_goes_negative_then_price_does_not_overflow() throws PurchaseException {
+        Product product = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .price(1D)
+                .build();
+        cart.add(new Item(product, Integer.MAX_VALUE));
+
+        cart.getItems().get("ID1").setQuantity(-2);
+        cart.getItems().get("ID1").setQuantity(0);
+
+        assertThat(cart.priceInCents(), is(0L));
+    }
+
+    @Test
+    public void given_cart_has_item1_and_item2_when_remove_item1_and_increment_item2_then_price_only_counts_item2() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(10D)
+                .build();
+        Item item1 = new Item(product1, 2);
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("LABEL2")
+                .available(false)
+                .price(25D)
+                .build();
+        Item item2 = new Item(product2, 3);
+        cart.add(item1, item2);
+
+        cart.removeItem("ID1");
+        cart.incrementQuantity("ID2");
+        item1.increment();
+
+        assertThat(cart.price(), is(100D));
+    }
+
+    @Test
+    public void given_cart_with_non_ascii_labels_when_printTo_writer_and_byte_buffer_then_output_is_identical_to_print() throws Exception {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("Cr\u00e8me br\u00fbl\u00e9e")
+                .available(true)
+                .price(4.05)
+                .build();
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("Gift \uD83C\uDF81 box")
+                .available(false)
+                .price(12D)
+                .build();
+        cart.add(new Item(product1, 3), new Item(product2, 12));
+        String expected = cart.print();
+
+        StringWriter writer = cart.printTo(new StringWriter());
+        ByteBuffer buffer = cart.printTo(ByteBuffer.allocateDirect(256));
+
+        assertThat(writer.toString(), is(expected));
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertTrue(Arrays.equals(bytes, expected.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void given_cart_has_3_items_when_product_price_changes_then_print_order_and_price_follow() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(1D)
+                .build();
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("LABEL2")
+                .available(false)
+                .price(2D)
+                .build();
+        Product product3 = new Product.ProductBuilder("ID3")
+                .label("LABEL3")
+                .available(false)
+                .price(3D)
+                .build();
+        cart.add(new Item(product1), new Item(product2), new Item(product3, 2));
+
+        product1.setPrice(5D);
+
+        StringBuilder expectedMessage = new StringBuilder();
+        expectedMessage
+                .append("LABEL2 -- 2.0 EUR -- Not Available -- Quantity: 1")
+                .append(LINE_SEPARATOR)
+                .append("LABEL3 -- 3.0 EUR -- Not Available -- Quantity: 2")
+                .append(LINE_SEPARATOR)
+                .append("LABEL1 -- 5.0 EUR -- Not Available -- Quantity: 1")
+                .append(LINE_SEPARATOR);
+        assertThat(cart.print(), is(expectedMessage.toString()));
+        assertThat(cart.price(), is(13D));
+    }
+
+    @Test
+    public void given_product_price_changed_when_quantity_changes_then_price_counts_new_price() throws PurchaseException {
+        Product product = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .price(1D)
+                .build();
+        cart.add(new Item(product, 2));
+
+        product.setPrice(5D);
+        cart.getItems().get("ID1").setQuantity(3);
+
+        assertThat(cart.price(), is(15D));
+    }
+
+    @Test
+    public void given_product_in_2_carts_when_price_changes_then_both_carts_follow() throws PurchaseException {
+        Product product = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .price(2D)
+                .build();
+        Cart other = new Cart();
+        cart.add(new Item(product, 2));
+        other.add(new Item(product, 3));
+
+        product.setPrice(4D);
+
+        assertThat(cart.price(), is(8D));
+        assertThat(other.price(), is(12D));
+    }
+
+    @Test
+    public void given_item_removed_when_product_price_changes_then_price_is_unchanged() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .price(2D)
+                .build();
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("LABEL2")
+                .price(3D)
+                .build();
+        cart.add(new Item(product1, 2), new Item(product2));
+        cart.removeItem("ID1");
+
+        product1.setPrice(4D);
+
+        assertThat(cart.price(), is(3D));
+        assertThat(cart.print(), is("LABEL2 -- 3.0 EUR -- Not Available -- Quantity: 1" + LINE_SEPARATOR));
+    }
+
+    @Test
+    public void given_cart_has_100_items_when_getLines_10_to_15_then_return_these_lines_in_display_order() throws PurchaseException {
+        for (int i = 0; i < 100; i++) {
+            Product product = new Product.ProductBuilder("ID" + i)
+                    .label("LABEL" + i)
+                    .available(true)
+                    .priceInCents(1000 - i)
+                    .build();
+            cart.add(new Item(product));
+        }
+
+        List<Item> lines = cart.getLines(10, 15);
+
+        assertThat(lines.size(), is(5));
+        assertThat(lines.get(0).getId(), is("ID89"));
+        assertThat(lines.get(4).getId(), is("ID85"));
+    }
+
+    @Test
+    public void given_cart_has_item1_when_addAll_batch_with_duplicates_then_merge_like_add() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(10D)
+                .build();
+        Product product2 = new Product.ProductBuilder("ID2")
+                .label("LABEL2")
+                .available(false)
+                .price(25D)
+                .build();
+        cart.add(new Item(product1, 2));
+
+        cart.addAll(Arrays.asList(new Item(product2, 3), new Item(product1, 5), new Item(product2), new Item(product2)));
+
+        Map<String, Item> items = cart.getItems();
+        assertThat(items.size(), is(2));
+        assertThat(items.get("ID1").getQuantity(), is(3));
+        assertThat(items.get("ID2").getQuantity(), is(5));
+        assertThat(cart.price(), is(155D));
+    }
+
+    @Test
+    public void given_batch_with_invalid_item_in_the_middle_when_addAll_then_throw_and_leave_cart_unchanged() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(10D)
+                .build();
+        Product invalid = new Product.ProductBuilder(null)
+                .label("LABEL2")
+                .available(false)
+                .price(25D)
+                .build();
+        cart.add(new Item(product1));
+
+        try {
+            cart.addAll(Arrays.asList(new Item(product1), new Item(invalid), new Item(product1)).stream());
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_VALID));
+        }
+
+        assertThat(cart.getItems().get("ID1").getQuantity(), is(1));
+        assertThat(cart.price(), is(10D));
+    }
+
+    @Test
+    public void given_empty_cart_when_tryIncrementQuantity_then_return_item_not_found() {
+        ErrorCode code = cart.tryIncrementQuantity("ID1");
+
+        assertThat(code, is(ITEM_NOT_FOUND));
+    }
+
+    @Test
+    public void given_cart_has_item_with_10_products_when_tryUpdateProductQuantity_using_negative_then_nothing_changes() throws PurchaseException {
+        Product product1 = new Product.ProductBuilder("ID1")
+                .label("LABEL1")
+                .available(false)
+                .price(2.5)
+                .build();
+        cart.add(new Item(product1, 10));
+
+        ErrorCode negative = cart.tryUpdateProductQuantity("ID1", -1);
+        ErrorCode applied = cart.tryUpdateProductQuantity("ID1", 4);
+
+        assertThat(negative, is(QUANTITY_SHOULD_BE_GREATER_THAN_0));
+        assertTrue(applied == null);
+        assertThat(cart.getItems().get("ID1").getQuantity(), is(4));
+    }
+
 }
@@ -0,0 +1,131 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.ITEM_NOT_VALID;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CartTextCodecTest {
+
+    private Cart cart;
+
+    @Before
+    public void setUp() throws PurchaseException {
+        cart = new Cart();
+        cart.add(new Item(product("ID1", "Tea, \"green\"", 250, true), 3),
+                new Item(product("ID2", null, 1999, false), 1),
+                new Item(product("ID3", "Caf\u00e9\nnoir\\", 5, true), 12));
+    }
+
+    @Test
+    public void given_cart_when_written_to_csv_and_read_back_then_print_and_price_are_the_same() throws Exception {
+        String csv = CartCsv.write(cart, new StringBuilder()).toString();
+        Cart copy = new Cart();
+
+        long rows = CartCsv.read(new StringReader(csv), copy, 2);
+
+        assertThat(rows, is(3L));
+        assertThat(copy.print(), is(cart.print()));
+        assertThat(copy.priceInCents(), is(cart.priceInCents()));
+        assertThat(copy.getItems().get("ID2").getProduct().isAvailable(), is(false));
+    }
+
+    @Test
+    public void given_cart_when_written_to_json_and_read_back_then_print_and_price_are_the_same() throws Exception {
+        String json = CartJson.write(cart, new StringBuilder()).toString();
+        Cart copy = new Cart();
+
+        long lines = CartJson.read(new StringReader(json), copy, 2);
+
+        assertThat(lines, is(3L));
+        assertThat(copy.print(), is(cart.print()));
+        assertThat(copy.getItems().get("ID3").getLabel(), is("Caf\u00e9\nnoir\\"));
+    }
+
+    @Test
+    public void given_cart_when_written_then_lines_come_in_print_order() throws IOException {
+        String csv = CartCsv.write(cart, new StringBuilder()).toString();
+
+        assertThat(csv, is(CartCsv.HEADER + "\n"
+                + "ID3,\"Caf\u00e9\nnoir\\\",0.05,true,12\n"
+                + "ID1,\"Tea, \"\"green\"\"\",2.5,true,3\n"
+                + "ID2,,19.99,false,1\n"));
+    }
+
+    @Test
+    public void given_csv_with_reordered_columns_and_repeated_ids_when_read_then_merge_like_add() throws Exception {
+        String csv = "quantity,price,id\r\n2,1.5,ID1\r\n\r\n4,1.5,ID1\r\n1,0.1,ID2";
+
+        long rows = CartCsv.read(new StringReader(csv), cart = new Cart(), 1);
+
+        assertThat(rows, is(3L));
+        assertThat(cart.getItems().get("ID1").getQuantity(), is(3));
+        assertThat(cart.getItems().get("ID2").getLabel(), is(nullValue()));
+        assertThat(cart.priceInCents(), is(3 * 150L + 10L));
+    }
+
+    @Test
+    public void given_json_with_unknown_keys_and_escapes_when_read_then_ignore_them() throws Exception {
+        String json = "[ {\"id\":\"ID\\u0031\", \"sku\":42, \"note\":null, \"price\":2.50, \"quantity\":2, \"label\":\"a\\/b\"} ]";
+
+        CartJson.read(new StringReader(json), cart = new Cart(), 10);
+
+        assertThat(cart.getItems().get("ID1").getLabel(), is("a/b"));
+        assertThat(cart.priceInCents(), is(500L));
+    }
+
+    @Test
+    public void given_empty_input_when_read_then_nothing_is_added() throws Exception {
+        Cart empty = new Cart();
+
+        assertThat(CartCsv.read(new StringReader(""), empty, 10), is(0L));
+        assertThat(CartJson.read(new StringReader(" [ ] "), empty, 10), is(0L));
+        assertThat(empty.getItems().isEmpty(), is(true));
+    }
+
+    @Test
+    public void given_malformed_input_when_read_then_report_the_line() throws Exception {
+        assertMalformed(() -> CartCsv.read(new StringReader("id,price,quantity\nID1,2.5,1\nID2,x,1\n"), new Cart(), 10), "line 3");
+        assertMalformed(() -> CartCsv.read(new StringReader("id,price,quantity\nID1,2.5\n"), new Cart(), 10), "line 2");
+        assertMalformed(() -> CartCsv.read(new StringReader("id,label,price,quantity\nID1,\"open,2.5,1\n"), new Cart(), 10), "Unterminated");
+        assertMalformed(() -> CartCsv.read(new StringReader("id,label\nID1,x\n"), new Cart(), 10), "Header");
+        assertMalformed(() -> CartJson.read(new StringReader("[\n{\"id\":\"ID1\",\"price\":1,\"quantity\":1},\n{\"id\":\"ID2\" \"price\":1}\n]"), new Cart(), 10), "line 3");
+        assertMalformed(() -> CartJson.read(new StringReader("[{\"id\":\"ID1\",\"quantity\":1}]"), new Cart(), 10), "line 1");
+        assertMalformed(() -> CartJson.read(new StringReader("[{\"id\":\"ID1\",\"price\":1,\"quantity\":1}] x"), new Cart(), 10), "after the array");
+        assertMalformed(() -> CartCsv.read(new StringReader("id,price,quantity\nID1,2.5,1\nID2,1e30,1\n"), new Cart(), 10), "line 3");
+        assertMalformed(() -> CartJson.read(new StringReader("[\n{\"id\":\"ID1\",\"price\":100000000000000000000,\"quantity\":1}\n]"), new Cart(), 10), "line 2");
+        assertMalformed(() -> CartCsv.read(new StringReader("id,price,quantity\n\n\nID1,2.5\n"), new Cart(), 10), "line 4");
+        assertMalformed(() -> CartJson.read(new StringReader("[{\"id\":\"ID1\",\"price\":1,\"quantity\":1},\n\n{\"id\":\"ID2\",\"quantity\":1}]"), new Cart(), 10), "line 3");
+    }
+
+    @Test
+    public void given_line_with_empty_id_when_read_then_throw_item_not_valid() throws IOException {
+        try {
+            CartCsv.read(new StringReader("id,price,quantity\n,2.5,1\n"), new Cart(), 10);
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_VALID));
+        }
+    }
+
+    private interface Import {
+        void run() throws Exception;
+    }
+
+    private static void assertMalformed(Import read, String message) throws Exception {
+        try {
+            read.run();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString(message));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.OUT_OF_STOCK;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CheckoutPipelineTest {
+
+    private CheckoutPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    @Test
+    public void given_cart_when_checked_out_then_receipt_has_total_and_printed_lines() throws Exception {
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().build();
+        Cart cart = cart(product("ID1", 250), product("ID2", 100));
+
+        CheckoutPipeline.Receipt receipt = pipeline.checkout(cart).get(10, TimeUnit.SECONDS);
+
+        assertThat(receipt.getCart(), is(sameInstance(cart)));
+        assertThat(receipt.getTotalInCents(), is(350L));
+        assertThat(receipt.getText(), is(cart.print()));
+    }
+
+    @Test
+    public void given_unavailable_line_when_checked_out_then_fail_out_of_stock() throws Exception {
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().build();
+
+        assertFailure(pipeline.checkout(cart(product("ID1", 250), product("ID2", "LABEL ID2", 100, false))));
+    }
+
+    @Test
+    public void given_carts_competing_for_stock_when_checked_out_then_sell_only_what_is_stocked() throws Exception {
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        inventory.restock("ID1", 3);
+        inventory.restock("ID2", 10);
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().inventory(inventory).build();
+        Cart first = cart(product("ID2", 100), product("ID1", 250));
+        first.updateProductQuantity("ID1", 2);
+        Cart second = cart(product("ID2", 100), product("ID1", 250));
+        second.updateProductQuantity("ID1", 2);
+
+        pipeline.checkout(first).get(10, TimeUnit.SECONDS);
+        assertFailure(pipeline.checkout(second));
+
+        assertThat(inventory.available("ID1"), is(1L));
+        assertThat(inventory.available("ID2"), is(9L));
+        assertThat(inventory.expire(), is(0));
+    }
+
+    @Test
+    public void given_reservation_expiring_before_render_when_checked_out_then_fail_out_of_stock_and_sell_nothing() throws Exception {
+        AtomicLong now = new AtomicLong();
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES, now::get);
+        inventory.restock("ID1", 3);
+        inventory.restock("ID2", 3);
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().inventory(inventory).build();
+        Cart cart = new Cart() {
+            @Override
+            public String print() {
+                now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+                inventory.expire();
+                return super.print();
+            }
+        };
+        cart.add(new Item(product("ID1", 250)), new Item(product("ID2", 100), 2));
+
+        assertFailure(pipeline.checkout(cart));
+
+        assertThat(inventory.available("ID1"), is(3L));
+        assertThat(inventory.available("ID2"), is(3L));
+    }
+
+    @Test
+    public void given_checkout_cancelled_while_rendered_when_completed_then_units_go_back_to_stock() throws Exception {
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        inventory.restock("ID1", 3);
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().inventory(inventory).build();
+        CompletableFuture<CompletableFuture<CheckoutPipeline.Receipt>> submitted = new CompletableFuture<>();
+        CountDownLatch rendered = new CountDownLatch(1);
+        Cart cart = new Cart() {
+            @Override
+            public String print() {
+                try {
+                    submitted.get(10, TimeUnit.SECONDS).cancel(false);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                rendered.countDown();
+                return super.print();
+            }
+        };
+        cart.add(new Item(product("ID1", 250), 2));
+
+        CompletableFuture<CheckoutPipeline.Receipt> receipt = pipeline.checkout(cart);
+        submitted.complete(receipt);
+        rendered.await(10, TimeUnit.SECONDS);
+        pipeline.close();
+
+        assertThat(receipt.isCancelled(), is(true));
+        assertThat(inventory.available("ID1"), is(3L));
+    }
+
+    @Test
+    public void given_many_checkouts_in_flight_when_queues_are_small_then_every_checkout_completes() throws Exception {
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        inventory.restock("ID1", 5_000);
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder()
+                .inventory(inventory)
+                .workers(2)
+                .queueCapacity(16)
+                .batchSize(8)
+                .build();
+        List<CompletableFuture<CheckoutPipeline.Receipt>> receipts = new ArrayList<>();
+        for (int i = 0; i < 6_000; i++) {
+            receipts.add(pipeline.checkout(cart(product("ID1", 100))));
+        }
+
+        int sold = 0;
+        for (CompletableFuture<CheckoutPipeline.Receipt> receipt : receipts) {
+            try {
+                assertThat(receipt.get(10, TimeUnit.SECONDS).getTotalInCents(), is(100L));
+                sold++;
+            } catch (ExecutionException e) {
+                assertThat(((PurchaseException) e.getCause()).getCode(), is(OUT_OF_STOCK));
+            }
+        }
+        assertThat(sold, is(5_000));
+        assertThat(inventory.available("ID1"), is(0L));
+    }
+
+    @Test
+    public void given_closed_pipeline_when_checked_out_then_reject_after_completing_queued_checkouts() throws Exception {
+        pipeline = new CheckoutPipeline.CheckoutPipelineBuilder().build();
+        CompletableFuture<CheckoutPipeline.Receipt> queued = pipeline.checkout(cart(product("ID1", 250)));
+
+        pipeline.close();
+
+        assertThat(queued.isDone(), is(true));
+        assertThat(queued.get().getTotalInCents(), is(250L));
+        try {
+            pipeline.checkout(cart(product("ID1", 250))).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+        }
+    }
+
+    private static void assertFailure(CompletableFuture<CheckoutPipeline.Receipt> receipt) throws Exception {
+        try {
+            receipt.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(((PurchaseException) e.getCause()).getCode(), is(OUT_OF_STOCK));
+        }
+    }
+
+    private static Cart cart(Product... products) throws PurchaseException {
+        Cart cart = new Cart();
+        for (Product product : products) {
+            cart.add(new Item(product));
+        }
+        return cart;
+    }
+}
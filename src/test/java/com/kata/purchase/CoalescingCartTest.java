@@ -0,0 +1,152 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CoalescingCartTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private Cart cart;
+
+    @Before
+    public void setUp() throws PurchaseException {
+        cart = new Cart();
+        cart.add(new Item(product("ID1", 100), 2), new Item(product("ID2", 250), 1));
+    }
+
+    private CoalescingCart front(int maximumPendingOps) {
+        return new CoalescingCart.CoalescingCartBuilder(cart)
+                .maximumPendingOps(maximumPendingOps)
+                .window(10, TimeUnit.MILLISECONDS)
+                .clock(now::get)
+                .build();
+    }
+
+    @Test
+    public void given_increments_when_buffered_then_write_one_update_once_flushed() throws PurchaseException {
+        CoalescingCart front = front(100);
+
+        for (int i = 0; i < 5; i++) {
+            front.incrementQuantity("ID1");
+        }
+
+        assertThat(quantity("ID1"), is(2));
+        assertThat(front.flush(), is(nullValue()));
+        assertThat(quantity("ID1"), is(7));
+        assertThat(front.getBufferedOps(), is(5L));
+        assertThat(front.getWrittenUpdates(), is(1L));
+        assertThat(front.getCoalescedOps(), is(4L));
+    }
+
+    @Test
+    public void given_decrements_below_zero_then_increments_when_flushed_then_floor_at_zero_like_the_cart() throws PurchaseException {
+        CoalescingCart front = front(100);
+
+        for (int i = 0; i < 5; i++) {
+            front.decrementQuantity("ID1");
+        }
+        front.incrementQuantity("ID1");
+        front.flush();
+
+        assertThat(quantity("ID1"), is(1));
+    }
+
+    @Test
+    public void given_update_between_deltas_when_flushed_then_apply_them_in_order() throws PurchaseException {
+        CoalescingCart front = front(100);
+
+        front.incrementQuantity("ID1");
+        front.updateProductQuantity("ID1", 1);
+        front.decrementQuantity("ID1");
+        front.decrementQuantity("ID1");
+        front.incrementQuantity("ID2");
+        front.decrementQuantity("ID2");
+
+        assertThat(front.priceInCents(), is(250L));
+        assertThat(quantity("ID1"), is(0));
+        assertThat(front.getWrittenUpdates(), is(1L));
+    }
+
+    @Test
+    public void given_invalid_operations_when_buffered_then_return_cart_error_codes_right_away() {
+        CoalescingCart front = front(100);
+
+        assertThat(front.tryIncrementQuantity("ID3"), is(ITEM_NOT_FOUND));
+        assertThat(front.tryUpdateProductQuantity("ID1", -1), is(QUANTITY_SHOULD_BE_GREATER_THAN_0));
+        assertThat(front.getBufferedOps(), is(0L));
+    }
+
+    @Test
+    public void given_maximum_or_window_reached_when_operation_buffered_then_write_pending_ones() throws PurchaseException {
+        CoalescingCart front = front(3);
+
+        front.incrementQuantity("ID1");
+        front.incrementQuantity("ID1");
+        assertThat(quantity("ID1"), is(2));
+        front.incrementQuantity("ID1");
+        assertThat(quantity("ID1"), is(5));
+
+        front.incrementQuantity("ID2");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        front.incrementQuantity("ID2");
+        assertThat(quantity("ID2"), is(3));
+    }
+
+    @Test
+    public void given_pending_operations_when_line_removed_then_write_them_first() throws PurchaseException {
+        CoalescingCart front = new CoalescingCart.CoalescingCartBuilder(cart)
+                .writeThrough(new SynchronizedCart(cart))
+                .build();
+
+        front.incrementQuantity("ID1");
+        front.removeItem("ID1");
+
+        assertThat(cart.getItems().containsKey("ID1"), is(false));
+        assertThat(front.tryIncrementQuantity("ID1"), is(ITEM_NOT_FOUND));
+        assertThat(front.print(), is(cart.print()));
+    }
+
+    @Test
+    public void given_random_operations_when_coalesced_then_cart_ends_like_one_applying_them_directly() throws PurchaseException {
+        Cart reference = new Cart();
+        reference.add(new Item(product("ID1", 100), 2), new Item(product("ID2", 250), 1));
+        CoalescingCart front = front(16);
+        Random random = new Random(7);
+        for (int step = 0; step < 20_000; step++) {
+            String productId = random.nextBoolean() ? "ID1" : "ID2";
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    assertThat(front.tryIncrementQuantity(productId), is(reference.tryIncrementQuantity(productId)));
+                    break;
+                case 2:
+                case 3:
+                    assertThat(front.tryDecrementQuantity(productId), is(reference.tryDecrementQuantity(productId)));
+                    break;
+                default:
+                    int quantity = random.nextInt(6) - 1;
+                    assertThat(front.tryUpdateProductQuantity(productId, quantity), is(reference.tryUpdateProductQuantity(productId, quantity)));
+            }
+            if (random.nextInt(50) == 0) {
+                assertThat(front.priceInCents(), is(reference.priceInCents()));
+            }
+        }
+
+        assertThat(front.print(), is(reference.print()));
+    }
+
+    private int quantity(String productId) {
+        return cart.getItems().get(productId).getQuantity();
+    }
+}
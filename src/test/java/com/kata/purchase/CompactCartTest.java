@@ -0,0 +1,159 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompactCartTest {
+
+    private CompactCart cart;
+
+    @Before
+    public void setUp() {
+        this.cart = new CompactCart();
+    }
+
+    @Test
+    public void given_null_items_when_add_then_throw_purchase_exception() {
+        try {
+            cart.add((Item[]) null);
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEMS_SHOULD_NOT_NULL));
+        }
+    }
+
+    @Test
+    public void given_product_having_null_id_when_add_then_throw_purchase_exception() {
+        try {
+            cart.add(new Item(product(null, "LABEL", 250, true)));
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_VALID));
+        }
+    }
+
+    @Test
+    public void given_3_items_of_same_product_when_add_then_cart_should_have_1_line_with_quantity_3() throws PurchaseException {
+        Product product = product("ID", "LABEL", 250, true);
+
+        cart.add(new Item(product), new Item(product), new Item(product));
+
+        assertThat(cart.size(), is(1));
+        assertThat(cart.getQuantity("ID"), is(3));
+        assertThat(cart.priceInCents(), is(750L));
+    }
+
+    @Test
+    public void given_empty_cart_when_edit_unknown_product_then_return_item_not_found() {
+        assertThat(cart.tryRemoveItem("ID"), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryIncrementQuantity("ID"), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryDecrementQuantity("ID"), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryUpdateProductQuantity("ID", 2), is(ITEM_NOT_FOUND));
+        assertThat(cart.getQuantity("ID"), is(-1));
+    }
+
+    @Test
+    public void given_negative_quantity_when_update_then_return_quantity_error() throws PurchaseException {
+        cart.add(new Item(product("ID", "LABEL", 250, true)));
+
+        assertThat(cart.tryUpdateProductQuantity("ID", -1), is(QUANTITY_SHOULD_BE_GREATER_THAN_0));
+        assertThat(cart.getQuantity("ID"), is(1));
+    }
+
+    @Test
+    public void given_zero_quantity_when_decrement_then_quantity_stays_zero() throws PurchaseException {
+        cart.add(new Item(product("ID", "LABEL", 250, true)));
+
+        cart.decrementQuantity("ID");
+        cart.decrementQuantity("ID");
+
+        assertThat(cart.getQuantity("ID"), is(0));
+        assertThat(cart.priceInCents(), is(0L));
+    }
+
+    @Test
+    public void given_same_operations_when_applied_to_cart_and_compact_cart_then_print_and_price_are_the_same() throws PurchaseException {
+        Cart reference = new Cart();
+        Random random = new Random(7);
+        Product[] products = new Product[500];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = product("ID" + i, i % 10 == 0 ? null : "LABEL" + (i % 37), 1 + random.nextInt(50), true);
+        }
+        for (int step = 0; step < 20_000; step++) {
+            Product product = products[random.nextInt(products.length)];
+            String productId = product.getId();
+            switch (random.nextInt(5)) {
+                case 0:
+                    reference.add(new Item(product, 2));
+                    cart.add(new Item(product, 2));
+                    break;
+                case 1:
+                    assertThat(cart.tryRemoveItem(productId), is(reference.tryRemoveItem(productId)));
+                    break;
+                case 2:
+                    assertThat(cart.tryIncrementQuantity(productId), is(reference.tryIncrementQuantity(productId)));
+                    break;
+                case 3:
+                    assertThat(cart.tryDecrementQuantity(productId), is(reference.tryDecrementQuantity(productId)));
+                    break;
+                default:
+                    int quantity = random.nextInt(5) - 1;
+                    assertThat(cart.tryUpdateProductQuantity(productId, quantity), is(reference.tryUpdateProductQuantity(productId, quantity)));
+            }
+        }
+
+        assertThat(cart.size(), is(reference.getItems().size()));
+        assertThat(cart.priceInCents(), is(reference.priceInCents()));
+        assertThat(cart.print(), is(reference.print()));
+    }
+
+    @Test
+    public void given_removed_lines_when_find_remaining_ones_then_every_line_is_still_found() throws PurchaseException {
+        for (int i = 0; i < 1000; i++) {
+            cart.add(new Item(product("ID" + i, "LABEL", 100, true), i + 1));
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            cart.removeItem("ID" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(cart.getQuantity("ID" + i), is(i % 3 == 0 ? -1 : i + 1));
+        }
+        assertThat(cart.tryIncrementQuantity("ID998"), is(nullValue()));
+    }
+
+    @Test
+    public void given_product_price_changed_when_print_then_lines_print_the_stored_price_in_order() throws PurchaseException {
+        Product cheap = product("ID1", "LABEL1", 100, true);
+        Product dear = product("ID2", "LABEL2", 200, true);
+        cart.add(new Item(cheap), new Item(dear));
+
+        cheap.setPriceInCents(300);
+
+        assertThat(cart.print(), is("LABEL1 -- 1.0 EUR -- Available -- Quantity: 1" + Cart.LINE_SEPARATOR
+                + "LABEL2 -- 2.0 EUR -- Available -- Quantity: 1" + Cart.LINE_SEPARATOR));
+        assertThat(cart.priceInCents(), is(300L));
+    }
+
+    @Test
+    public void given_product_id_changed_when_find_then_line_is_found_by_its_id_when_added() throws PurchaseException {
+        Product product = product("ID1", "LABEL1", 100, true);
+        cart.add(new Item(product));
+
+        product.setId("ID2");
+
+        assertThat(cart.getQuantity("ID1"), is(1));
+        assertThat(cart.tryIncrementQuantity("ID1"), is(nullValue()));
+        assertThat(cart.tryRemoveItem("ID2"), is(ITEM_NOT_FOUND));
+    }
+}
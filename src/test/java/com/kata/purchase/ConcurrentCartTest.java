@@ -0,0 +1,133 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.ITEM_NOT_FOUND;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrentCartTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20_000;
+    private static final int PRODUCTS = 4;
+
+    private ConcurrentCart cart;
+
+    @Before
+    public void setUp() {
+        this.cart = new ConcurrentCart();
+    }
+
+    @Test
+    public void given_empty_cart_when_increment_quantity_then_throw_purchase_exception() {
+        try {
+            cart.incrementQuantity("ID1");
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_FOUND));
+        }
+    }
+
+    @Test
+    public void given_added_item_when_caller_changes_its_quantity_then_cart_line_does_not_change() throws PurchaseException {
+        Item item = new Item(product("ID1", 100), 2);
+        cart.add(item);
+
+        item.setQuantity(10);
+
+        assertThat(cart.getItems().get("ID1").getQuantity(), is(2));
+        assertThat(cart.priceInCents(), is(200L));
+    }
+
+    @Test
+    public void given_added_product_when_its_price_changes_then_print_agrees_with_price() throws PurchaseException {
+        Product product = product("ID1", "LABEL1", 100, true);
+        cart.add(new Item(product, 2));
+
+        product.setPriceInCents(500);
+
+        assertThat(cart.priceInCents(), is(200L));
+        assertThat(cart.print(), is("LABEL1 -- 1.0 EUR -- Available -- Quantity: 2" + Cart.LINE_SEPARATOR));
+    }
+
+    @Test
+    public void given_8_threads_adding_and_incrementing_same_products_when_done_then_no_update_is_lost() throws Exception {
+        for (int p = 1; p <= PRODUCTS; p++) {
+            cart.add(new Item(product("ID" + p, 100L * p), 1));
+        }
+
+        runConcurrently((thread, i) -> {
+            int p = 1 + i % PRODUCTS;
+            String productId = "ID" + p;
+            if (i % 2 == 0) {
+                cart.incrementQuantity(productId);
+            } else {
+                cart.add(new Item(product(productId, 100L * p)));
+            }
+            if (i % 1000 == 0) {
+                cart.print();
+            }
+        });
+
+        int expectedQuantity = 1 + THREADS * OPERATIONS / PRODUCTS;
+        long expectedTotal = 0;
+        for (int p = 1; p <= PRODUCTS; p++) {
+            assertThat(cart.getItems().get("ID" + p).getQuantity(), is(expectedQuantity));
+            expectedTotal += expectedQuantity * 100L * p;
+        }
+        assertThat(cart.priceInCents(), is(expectedTotal));
+    }
+
+    @Test
+    public void given_8_threads_incrementing_and_decrementing_when_done_then_price_matches_lines() throws Exception {
+        cart.add(new Item(product("ID1", 100), 1_000_000), new Item(product("ID2", 200), 1_000_000));
+
+        runConcurrently((thread, i) -> {
+            String productId = "ID" + (1 + thread % 2);
+            if (thread < 4) {
+                cart.incrementQuantity(productId);
+            } else {
+                cart.decrementQuantity(productId);
+            }
+        });
+
+        assertThat(cart.getItems().get("ID1").getQuantity(), is(1_000_000));
+        assertThat(cart.getItems().get("ID2").getQuantity(), is(1_000_000));
+        assertThat(cart.priceInCents(), is(300_000_000L));
+    }
+
+    private interface Operation {
+        void run(int thread, int i) throws PurchaseException;
+    }
+
+    private static void runConcurrently(Operation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    operation.run(thread, i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+}
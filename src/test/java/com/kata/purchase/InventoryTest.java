@@ -0,0 +1,241 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.ErrorCode;
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.kata.purchase.exception.ErrorCode.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class InventoryTest {
+
+    private static final int THREADS = 8;
+
+    private final AtomicLong now = new AtomicLong();
+    private Inventory inventory;
+    private Product product;
+
+    @Before
+    public void setUp() {
+        inventory = new Inventory(10, TimeUnit.MINUTES, now::get);
+        inventory.restock("ID1", 5);
+        product = inventory.track(new Product.ProductBuilder("ID1").label("LABEL1").price(2.5).available(false).build());
+    }
+
+    @Test
+    public void given_stock_when_cart_adds_and_increments_then_units_are_held() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+
+        cart.add(new Item(product, 3));
+        cart.incrementQuantity("ID1");
+
+        assertThat(inventory.available("ID1"), is(1L));
+        assertThat(cart.getReservedUnits("ID1"), is(4));
+    }
+
+    @Test
+    public void given_missing_units_when_cart_adds_then_throw_out_of_stock_and_keep_cart_unchanged() {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+
+        try {
+            cart.add(new Item(product, 6));
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(OUT_OF_STOCK));
+        }
+        assertThat(cart.getCart().getItems().isEmpty(), is(true));
+        assertThat(inventory.available("ID1"), is(5L));
+    }
+
+    @Test
+    public void given_held_units_when_decrement_update_and_remove_then_units_are_given_back() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+        cart.add(new Item(product, 4));
+
+        cart.decrementQuantity("ID1");
+        assertThat(inventory.available("ID1"), is(2L));
+        assertThat(cart.tryUpdateProductQuantity("ID1", 6), is(OUT_OF_STOCK));
+        assertThat(cart.getCart().getItems().get("ID1").getQuantity(), is(3));
+        cart.updateProductQuantity("ID1", 5);
+        assertThat(inventory.available("ID1"), is(0L));
+        cart.removeItem("ID1");
+
+        assertThat(inventory.available("ID1"), is(5L));
+        assertThat(cart.tryRemoveItem("ID1"), is(ITEM_NOT_FOUND));
+    }
+
+    @Test
+    public void given_stock_when_sold_out_then_product_is_not_available_and_prints_so() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+        assertThat(product.isAvailable(), is(true));
+
+        cart.add(new Item(product, 5));
+
+        assertThat(product.isAvailable(), is(false));
+        assertThat(product.print(), is("LABEL1 -- 2.5 EUR -- Not Available"));
+    }
+
+    @Test
+    public void given_expired_reservation_when_cart_changes_line_then_units_are_reserved_again() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+        cart.add(new Item(product, 2));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+
+        assertThat(inventory.expire(), is(1));
+        assertThat(inventory.available("ID1"), is(5L));
+        assertThat(cart.getReservedUnits("ID1"), is(0));
+
+        cart.incrementQuantity("ID1");
+
+        assertThat(cart.getReservedUnits("ID1"), is(3));
+        assertThat(inventory.available("ID1"), is(2L));
+        assertThat(inventory.expire(), is(0));
+    }
+
+    @Test
+    public void given_expired_reservation_and_sold_out_stock_when_cart_decrements_and_removes_line_then_never_out_of_stock() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart(), inventory);
+        cart.add(new Item(product, 5));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        inventory.expire();
+        inventory.reservation("ID1").hold(5);
+
+        assertThat(cart.tryDecrementQuantity("ID1"), is(nullValue()));
+        assertThat(cart.tryUpdateProductQuantity("ID1", 2), is(nullValue()));
+
+        assertThat(cart.getCart().getItems().get("ID1").getQuantity(), is(2));
+        assertThat(cart.getReservedUnits("ID1"), is(0));
+        assertThat(cart.tryRemoveItem("ID1"), is(nullValue()));
+        assertThat(inventory.available("ID1"), is(0L));
+    }
+
+    @Test
+    public void given_cart_rejecting_update_when_increment_then_units_held_are_given_back() throws PurchaseException {
+        ReservingCart cart = new ReservingCart(new Cart() {
+            @Override
+            public ErrorCode tryUpdateProductQuantity(String productId, int quantity) {
+                return ITEM_NOT_FOUND;
+            }
+        }, inventory);
+        cart.add(new Item(product, 2));
+
+        assertThat(cart.tryIncrementQuantity("ID1"), is(ITEM_NOT_FOUND));
+
+        assertThat(cart.getReservedUnits("ID1"), is(2));
+        assertThat(inventory.available("ID1"), is(3L));
+    }
+
+    @Test
+    public void given_held_reservation_when_commit_then_units_are_sold() {
+        Inventory.Reservation reservation = inventory.reservation("ID1");
+        reservation.hold(2);
+
+        assertThat(reservation.commit(), is(true));
+
+        assertThat(reservation.getUnits(), is(0));
+        assertThat(inventory.available("ID1"), is(3L));
+        assertThat(inventory.expire(), is(0));
+    }
+
+    @Test
+    public void given_expired_reservation_when_commit_then_return_false_and_sell_nothing() {
+        Inventory.Reservation reservation = inventory.reservation("ID1");
+        reservation.hold(2);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        inventory.expire();
+
+        assertThat(reservation.commit(), is(false));
+
+        assertThat(inventory.available("ID1"), is(5L));
+        assertThat(reservation.hold(1), is(true));
+        assertThat(reservation.commit(), is(true));
+        assertThat(inventory.available("ID1"), is(4L));
+    }
+
+    @Test
+    public void given_hot_product_when_many_threads_reserve_one_unit_then_never_oversell() throws Exception {
+        inventory.restock("HOT", 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger held = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 5000; i++) {
+                    if (inventory.reservation("HOT").hold(1)) {
+                        held.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(held.get(), is(1000));
+        assertThat(inventory.available("HOT"), is(0L));
+    }
+
+    @Test
+    public void given_carts_adding_and_removing_hot_product_concurrently_then_stock_is_conserved() throws Exception {
+        inventory.restock("HOT", 50);
+        Product hot = new Product.ProductBuilder("HOT").label("HOT").price(1.0).available(true).build();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<ReservingCart>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ReservingCart cart = new ReservingCart(new Cart(), inventory);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    if (cart.getCart().getItems().isEmpty()) {
+                        try {
+                            cart.add(new Item(hot));
+                        } catch (PurchaseException e) {
+                            assertThat(e.getCode(), is(OUT_OF_STOCK));
+                        }
+                    } else if (random.nextBoolean()) {
+                        cart.tryIncrementQuantity("HOT");
+                    } else if (random.nextInt(10) == 0) {
+                        cart.tryRemoveItem("HOT");
+                    } else {
+                        cart.tryDecrementQuantity("HOT");
+                    }
+                }
+                return cart;
+            }));
+        }
+        long inCarts = 0;
+        for (Future<ReservingCart> future : futures) {
+            ReservingCart cart = future.get(30, TimeUnit.SECONDS);
+            Item line = cart.getCart().getItems().get("HOT");
+            int quantity = line == null ? 0 : line.getQuantity();
+            assertThat(cart.getReservedUnits("HOT"), is(quantity));
+            inCarts += quantity;
+        }
+        executor.shutdown();
+
+        assertThat(inventory.available("HOT") + inCarts, is(50L));
+        assertThat(inventory.available("HOT") >= 0, is(true));
+    }
+
+    @Test
+    public void given_unknown_product_when_reserve_then_nothing_is_held() {
+        assertThat(inventory.reservation("UNKNOWN").hold(1), is(false));
+        assertThat(inventory.isAvailable("UNKNOWN"), is(false));
+        assertThat(new ReservingCart(new Cart(), inventory).refresh(), is(nullValue()));
+    }
+}
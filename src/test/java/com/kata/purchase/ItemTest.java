@@ -2,6 +2,8 @@ package com.kata.purchase;
 
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -130,4 +132,41 @@ public class ItemTest {
         assertThat(message, is("LABEL -- 2.5 EUR -- Not Available -- Quantity: 20"));
     }
 
+
+    @Test
+    public void given_printed_item_when_quantity_or_product_fields_change_then_print_reflects_them() {
+        Product product = new Product.ProductBuilder("ID")
+                .label("LABEL")
+                .price(2.5)
+                .available(true)
+                .build();
+        Item item = new Item(product, 3);
+        assertThat(item.print(), is("LABEL -- 2.5 EUR -- Available -- Quantity: 3"));
+
+        item.increment();
+        assertThat(item.print(), is("LABEL -- 2.5 EUR -- Available -- Quantity: 4"));
+        product.setLabel("OTHER");
+        assertThat(item.print(), is("OTHER -- 2.5 EUR -- Available -- Quantity: 4"));
+        product.setPrice(3.0);
+        assertThat(item.print(), is("OTHER -- 3.0 EUR -- Available -- Quantity: 4"));
+        product.setAvailable(false);
+        assertThat(item.print(), is("OTHER -- 3.0 EUR -- Not Available -- Quantity: 4"));
+        item.setProduct(new Product.ProductBuilder("ID2").label("NEW").price(1.0).available(true).build());
+        assertThat(item.print(), is("NEW -- 1.0 EUR -- Available -- Quantity: 4"));
+    }
+
+    @Test
+    public void given_printed_item_when_inventory_runs_out_then_print_not_available() {
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        inventory.restock("ID", 1);
+        Item item = new Item(inventory.track(new Product.ProductBuilder("ID")
+                .label("LABEL")
+                .price(2.5)
+                .build()), 1);
+        assertThat(item.print(), is("LABEL -- 2.5 EUR -- Available -- Quantity: 1"));
+
+        inventory.restock("ID", -1);
+
+        assertThat(item.print(), is("LABEL -- 2.5 EUR -- Not Available -- Quantity: 1"));
+    }
 }
@@ -0,0 +1,72 @@
+package com.kata.purchase;
+
+import org.junit.Test;
+
+import static com.kata.purchase.Money.NO_PRICE;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MoneyTest {
+
+    @Test
+    public void given_amount_2_5_when_toCents_then_return_250() {
+        long cents = Money.toCents(2.5);
+
+        assertThat(cents, is(250L));
+    }
+
+    @Test
+    public void given_null_amount_when_toCents_then_return_no_price() {
+        long cents = Money.toCents(null);
+
+        assertThat(cents, is(NO_PRICE));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void given_amount_beyond_long_cents_when_toCents_then_throw_arithmetic_exception() {
+        Money.toCents(1e30);
+    }
+
+    @Test
+    public void given_no_price_when_toDouble_then_return_null() {
+        Double amount = Money.toDouble(NO_PRICE);
+
+        assertThat(amount, is(nullValue()));
+    }
+
+    @Test
+    public void given_cents_when_format_then_render_like_double_toString() {
+        assertThat(Money.format(250), is("2.5"));
+        assertThat(Money.format(1000), is("10.0"));
+        assertThat(Money.format(5), is("0.05"));
+        assertThat(Money.format(1999), is("19.99"));
+        assertThat(Money.format(-250), is("-2.5"));
+    }
+
+    @Test
+    public void given_decimal_text_when_parseCents_then_return_exact_cents() {
+        assertThat(Money.parseCents("2.5"), is(250L));
+        assertThat(Money.parseCents("10"), is(1000L));
+        assertThat(Money.parseCents("0.05"), is(5L));
+        assertThat(Money.parseCents("-19.99"), is(-1999L));
+        assertThat(Money.parseCents("0.125"), is(12L));
+        assertThat(Money.parseCents("1e2"), is(10000L));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void given_text_without_digits_when_parseCents_then_throw_number_format_exception() {
+        Money.parseCents(".");
+    }
+
+    @Test
+    public void given_1000_lines_of_0_1_when_summed_in_cents_then_total_is_exact() {
+        long total = 0;
+        for (int i = 0; i < 1000; i++) {
+            total += Money.toCents(0.1);
+        }
+
+        assertThat(Money.amount(total), is(100D));
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OffHeapCartTest {
+
+    private OffHeapLineStore store;
+    private ProductCatalog catalog;
+    private OffHeapCart cart;
+
+    @Before
+    public void setUp() {
+        store = new OffHeapLineStore();
+        catalog = new ProductCatalog();
+        cart = new OffHeapCart(store, catalog);
+    }
+
+    @Test
+    public void given_invalid_item_when_add_then_throw_item_not_valid() {
+        try {
+            cart.add(new Item(product(null, 250)));
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_VALID));
+        }
+    }
+
+    @Test
+    public void given_3_items_of_same_product_when_add_then_cart_should_have_1_line_with_quantity_3() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250)), new Item(product("ID1", 250)), new Item(product("ID1", 250)));
+
+        assertThat(cart.size(), is(1));
+        assertThat(cart.getQuantity("ID1"), is(3));
+        assertThat(cart.priceInCents(), is(750L));
+    }
+
+    @Test
+    public void given_unknown_product_or_negative_quantity_when_edit_then_return_cart_error_codes() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250)));
+
+        assertThat(cart.tryRemoveItem("ID2"), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryIncrementQuantity(null), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryUpdateProductQuantity("ID1", -1), is(QUANTITY_SHOULD_BE_GREATER_THAN_0));
+        assertThat(cart.tryUpdateProductQuantity("ID1", 0), is(nullValue()));
+        assertThat(cart.tryDecrementQuantity("ID1"), is(nullValue()));
+        assertThat(cart.getQuantity("ID1"), is(0));
+    }
+
+    @Test
+    public void given_catalog_price_changed_when_print_then_print_the_price_of_the_line() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250), 2));
+
+        catalog.load(Collections.singletonList(product("ID1", 300)));
+
+        assertThat(cart.print(), is("LABEL ID1 -- 2.5 EUR -- Available -- Quantity: 2" + Cart.LINE_SEPARATOR));
+        assertThat(cart.priceInCents(), is(500L));
+    }
+
+    @Test
+    public void given_released_carts_when_new_carts_grow_then_reuse_their_blocks() throws PurchaseException {
+        OffHeapCart[] carts = new OffHeapCart[100];
+        for (int c = 0; c < carts.length; c++) {
+            carts[c] = new OffHeapCart(store, catalog);
+            for (int l = 0; l < 20; l++) {
+                carts[c].add(new Item(product("ID" + l, 100 + l)));
+            }
+        }
+        long reserved = store.getReservedBytes();
+        long used = store.getUsedBytes();
+        for (OffHeapCart released : carts) {
+            released.release();
+        }
+        assertThat(store.getUsedBytes(), is(0L));
+
+        for (int c = 0; c < carts.length; c++) {
+            carts[c] = new OffHeapCart(store, catalog);
+            for (int l = 0; l < 20; l++) {
+                carts[c].add(new Item(product("ID" + l, 100 + l)));
+            }
+        }
+
+        assertThat(store.getReservedBytes(), is(reserved));
+        assertThat(store.getUsedBytes(), is(used));
+        assertThat(carts[42].getQuantity("ID19"), is(1));
+    }
+
+    @Test
+    public void given_cart_larger_than_a_slab_when_add_then_throw_illegal_argument() throws PurchaseException {
+        OffHeapCart small = new OffHeapCart(new OffHeapLineStore(8), catalog);
+        for (int l = 0; l < 16; l++) {
+            small.add(new Item(product("ID" + l, 100)));
+        }
+
+        try {
+            small.add(new Item(product("ID16", 100)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(small.size(), is(16));
+        }
+    }
+
+    @Test
+    public void given_same_operations_when_applied_to_cart_and_off_heap_cart_then_print_and_price_are_the_same() throws PurchaseException {
+        Cart reference = new Cart();
+        Random random = new Random(13);
+        Product[] products = new Product[200];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = catalog.intern(product("ID" + i, "LABEL", 1 + random.nextInt(50), true));
+        }
+        for (int step = 0; step < 20_000; step++) {
+            String productId = products[random.nextInt(products.length)].getId();
+            switch (random.nextInt(4)) {
+                case 0:
+                    Product product = products[random.nextInt(products.length)];
+                    reference.add(new Item(product, 3));
+                    cart.add(new Item(product, 3));
+                    break;
+                case 1:
+                    assertThat(cart.tryRemoveItem(productId), is(reference.tryRemoveItem(productId)));
+                    break;
+                case 2:
+                    assertThat(cart.tryDecrementQuantity(productId), is(reference.tryDecrementQuantity(productId)));
+                    break;
+                default:
+                    int quantity = random.nextInt(4);
+                    assertThat(cart.tryUpdateProductQuantity(productId, quantity), is(reference.tryUpdateProductQuantity(productId, quantity)));
+            }
+        }
+
+        assertThat(cart.size(), is(reference.getItems().size()));
+        assertThat(cart.priceInCents(), is(reference.priceInCents()));
+        assertThat(cart.print(), is(reference.print()));
+    }
+}
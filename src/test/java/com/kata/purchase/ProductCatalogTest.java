@@ -0,0 +1,105 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.kata.purchase.Products.product;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ProductCatalogTest {
+
+    private ProductCatalog catalog;
+
+    @Before
+    public void setUp() {
+        this.catalog = new ProductCatalog();
+    }
+
+    @Test
+    public void given_2_products_with_same_id_when_intern_then_return_the_same_shared_instance() {
+        Product first = product("ID1", 250);
+        Product second = product("ID1", 250);
+
+        Product shared1 = catalog.intern(first);
+        Product shared2 = catalog.intern(second);
+
+        assertTrue(shared1 == shared2);
+        assertTrue(shared1 != first);
+        assertThat(shared1.isShared(), is(true));
+        assertThat(catalog.size(), is(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void given_shared_product_when_setPrice_then_throw_unsupported_operation_exception() {
+        Product shared = catalog.intern(product("ID1", 250));
+
+        shared.setPrice(3D);
+    }
+
+    @Test
+    public void given_loaded_products_when_get_by_code_then_return_product_with_that_id() {
+        catalog.load(Arrays.asList(product("ID1", 100), product("ID2", 200), product("ID3", 300)));
+
+        int code = catalog.code("ID2");
+
+        assertThat(catalog.get(code).getId(), is("ID2"));
+        assertThat(catalog.code("UNKNOWN"), is(-1));
+        assertThat(catalog.get(42), is(nullValue()));
+    }
+
+    @Test
+    public void given_loaded_product_when_load_it_again_with_new_price_then_replace_it_under_the_same_code() {
+        catalog.load(Arrays.asList(product("ID1", 100), product("ID2", 200)));
+        int code = catalog.code("ID2");
+
+        catalog.load(Arrays.asList(product("ID2", 500)));
+
+        assertThat(catalog.code("ID2"), is(code));
+        assertThat(catalog.get("ID2").getPrice(), is(5D));
+        assertThat(catalog.size(), is(2));
+    }
+
+    @Test
+    public void given_cart_using_catalog_when_add_items_built_from_separate_products_then_lines_share_catalog_products() throws PurchaseException {
+        Cart cart = new Cart(catalog);
+        Cart otherCart = new Cart(catalog);
+
+        cart.add(new Item(product("ID1", 250), 2));
+        otherCart.add(new Item(product("ID1", 250)));
+
+        Product product = cart.getItems().get("ID1").getProduct();
+        assertTrue(product == otherCart.getItems().get("ID1").getProduct());
+        assertTrue(product == catalog.get("ID1"));
+        assertThat(cart.price(), is(5D));
+    }
+
+    @Test
+    public void given_product_tracked_by_inventory_when_intern_then_shared_product_follows_the_stock() {
+        Inventory inventory = new Inventory(1, TimeUnit.MINUTES);
+        Product shared = catalog.intern(inventory.track(product("ID1", 250)));
+
+        assertThat(shared.isAvailable(), is(false));
+        inventory.restock("ID1", 1);
+        assertThat(shared.isAvailable(), is(true));
+    }
+
+    @Test
+    public void given_cart_using_catalog_when_add_item_then_caller_item_keeps_its_product() throws PurchaseException {
+        Cart cart = new Cart(catalog);
+        Product product = product("ID1", 250);
+        Item item = new Item(product, 2);
+
+        cart.add(item);
+
+        assertTrue(item.getProduct() == product);
+        assertTrue(cart.getItems().get("ID1").getProduct() == catalog.get("ID1"));
+        item.setQuantity(5);
+        assertThat(cart.price(), is(5D));
+    }
+}
@@ -2,6 +2,8 @@ package com.kata.purchase;
 
 import org.junit.Test;
 
+import java.io.IOException;
+
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -59,4 +61,18 @@ public class ProductTest {
         assertThat(message, is("LABEL -- 2.5 EUR -- Not Available"));
     }
 
+    @Test
+    public void given_product_when_printTo_appendable_then_append_all_details() throws IOException {
+        Product product = new Product.ProductBuilder("ID")
+                .price(2.5)
+                .label("LABEL")
+                .available(true)
+                .build();
+        StringBuilder sb = new StringBuilder("> ");
+
+        product.printTo(sb);
+
+        assertThat(sb.toString(), is("> LABEL -- 2.5 EUR -- Available"));
+    }
+
 }
@@ -0,0 +1,23 @@
+package com.kata.purchase;
+
+/**
+ * Products of the tests that only need some product with a given id and price: available and labelled
+ * {@code "LABEL " + id} unless said otherwise.
+ */
+public final class Products {
+
+    private Products() {
+    }
+
+    public static Product product(String id, long priceInCents) {
+        return product(id, "LABEL " + id, priceInCents, true);
+    }
+
+    public static Product product(String id, String label, long priceInCents, boolean available) {
+        return new Product.ProductBuilder(id)
+                .label(label)
+                .priceInCents(priceInCents)
+                .available(available)
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.kata.purchase;
+
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.kata.purchase.Products.product;
+import static com.kata.purchase.exception.ErrorCode.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class VersionedCartTest {
+
+    private VersionedCart cart;
+
+    @Before
+    public void setUp() {
+        cart = new VersionedCart();
+    }
+
+    @Test
+    public void given_snapshot_when_cart_changes_then_snapshot_keeps_its_lines_price_and_print() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250), 2), new Item(product("ID2", 100), 1));
+        CartSnapshot before = cart.snapshot();
+        String printed = before.print();
+
+        cart.incrementQuantity("ID1");
+        cart.removeItem("ID2");
+
+        assertThat(before.size(), is(2));
+        assertThat(before.getQuantity("ID1"), is(2));
+        assertThat(before.priceInCents(), is(600L));
+        assertThat(before.print(), is(printed));
+        assertThat(cart.snapshot().getQuantity("ID1"), is(3));
+        assertThat(cart.snapshot().getQuantity("ID2"), is(-1));
+        assertThat(cart.priceInCents(), is(750L));
+    }
+
+    @Test
+    public void given_failed_operation_when_applied_then_no_new_version_is_published() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250), 2));
+        CartSnapshot before = cart.snapshot();
+
+        assertThat(cart.tryRemoveItem("ID2"), is(ITEM_NOT_FOUND));
+        assertThat(cart.tryUpdateProductQuantity("ID1", -1), is(QUANTITY_SHOULD_BE_GREATER_THAN_0));
+        assertThat(cart.tryIncrementQuantity("ID2"), is(ITEM_NOT_FOUND));
+
+        assertThat(cart.snapshot(), is(sameInstance(before)));
+    }
+
+    @Test
+    public void given_batch_with_invalid_item_when_add_then_no_item_of_the_batch_is_published() throws PurchaseException {
+        cart.add(new Item(product("ID1", 250), 2));
+        CartSnapshot before = cart.snapshot();
+
+        try {
+            cart.add(new Item(product("ID1", 250)), new Item(product("ID2", 100)), new Item(null));
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_VALID));
+        }
+
+        assertThat(cart.snapshot(), is(sameInstance(before)));
+        assertThat(cart.snapshot().getQuantity("ID1"), is(2));
+        assertThat(cart.snapshot().size(), is(1));
+    }
+
+    @Test
+    public void given_ids_with_same_hash_code_when_added_and_removed_then_lines_stay_distinct() throws PurchaseException {
+        cart.add(new Item(product("Aa", 100), 1), new Item(product("BB", 200), 2), new Item(product("AaAa", 300), 3), new Item(product("BBBB", 400), 4));
+
+        cart.removeItem("Aa");
+
+        assertThat(cart.snapshot().getQuantity("Aa"), is(-1));
+        assertThat(cart.snapshot().getQuantity("BB"), is(2));
+        assertThat(cart.snapshot().getQuantity("BBBB"), is(4));
+        assertThat(cart.priceInCents(), is(400L + 900L + 1600L));
+    }
+
+    @Test
+    public void given_same_operations_when_applied_to_cart_and_versioned_cart_then_print_and_price_are_the_same() throws PurchaseException {
+        Cart reference = new Cart();
+        Random random = new Random(11);
+        Product[] products = new Product[3000];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = product("ID" + i, "LABEL", 1 + random.nextInt(50), true);
+        }
+        for (int step = 0; step < 30_000; step++) {
+            String productId = products[random.nextInt(products.length)].getId();
+            switch (random.nextInt(4)) {
+                case 0:
+                    Product product = products[random.nextInt(products.length)];
+                    reference.add(new Item(product, 3));
+                    cart.add(new Item(product, 3));
+                    break;
+                case 1:
+                    assertThat(cart.tryRemoveItem(productId), is(reference.tryRemoveItem(productId)));
+                    break;
+                case 2:
+                    assertThat(cart.tryDecrementQuantity(productId), is(reference.tryDecrementQuantity(productId)));
+                    break;
+                default:
+                    int quantity = random.nextInt(4);
+                    assertThat(cart.tryUpdateProductQuantity(productId, quantity), is(reference.tryUpdateProductQuantity(productId, quantity)));
+            }
+        }
+
+        assertThat(cart.snapshot().size(), is(reference.getItems().size()));
+        assertThat(cart.priceInCents(), is(reference.priceInCents()));
+        assertThat(cart.print(), is(reference.print()));
+    }
+
+    @Test
+    public void given_writer_when_readers_print_concurrently_then_every_snapshot_is_consistent() throws Exception {
+        Product product = product("ID1", 100);
+        cart.add(new Item(product, 1));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    CartSnapshot snapshot = cart.snapshot();
+                    long total = 0;
+                    for (int p = 1; p <= 10; p++) {
+                        CartSnapshot.Line line = snapshot.get("ID" + p);
+                        total += line == null ? 0 : line.getTotalInCents();
+                    }
+                    assertThat(total, is(snapshot.priceInCents()));
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            cart.add(new Item(product("ID" + (1 + i % 10), 100 + i % 10)));
+            if (i % 3 == 0) {
+                cart.tryRemoveItem("ID" + (1 + i % 7));
+            }
+        }
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
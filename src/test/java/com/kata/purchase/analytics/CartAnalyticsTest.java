@@ -0,0 +1,113 @@
+package com.kata.purchase.analytics;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+import com.kata.purchase.Product;
+import com.kata.purchase.ProductCatalog;
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.kata.purchase.Products.product;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class CartAnalyticsTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    public void given_captured_carts_when_grouped_by_product_then_sum_quantities_and_revenue() throws PurchaseException {
+        ProductCatalog dictionary = new ProductCatalog();
+        CartColumns columns = new CartColumns.CartColumnsBuilder(dictionary)
+                .add(cart(new Item(product("ID1", 100), 2), new Item(product("ID2", 250), 1)), 0)
+                .add(cart(new Item(product("ID2", 300), 3)), 0)
+                .build();
+
+        CartAnalytics analytics = new CartAnalytics(columns);
+
+        int id1 = dictionary.code("ID1");
+        int id2 = dictionary.code("ID2");
+        assertThat(columns.getCartCount(), is(2));
+        assertThat(columns.getLineCount(), is(3));
+        assertThat(analytics.quantityByProduct()[id1], is(2L));
+        assertThat(analytics.quantityByProduct()[id2], is(4L));
+        assertThat(analytics.revenueByProduct()[id2], is(250L + 900L));
+        assertArrayEquals(new long[]{450L, 900L}, analytics.cartTotals());
+    }
+
+    @Test
+    public void given_carts_captured_at_different_hours_when_averaged_then_group_by_hour_of_day() throws PurchaseException {
+        CartColumns columns = new CartColumns.CartColumnsBuilder(new ProductCatalog())
+                .add(cart(new Item(product("ID1", 100), 1)), 9 * HOUR)
+                .add(cart(new Item(product("ID1", 100), 3)), 24 * HOUR + 9 * HOUR + 59 * 60_000L)
+                .add(cart(new Item(product("ID1", 100), 7)), 23 * HOUR)
+                .add(new Cart(), -HOUR)
+                .build();
+
+        long[] averages = new CartAnalytics(columns).averageCartValueByHour();
+
+        assertThat(averages[9], is(200L));
+        assertThat(averages[23], is((700L + 0L) / 2));
+        assertThat(averages[0], is(0L));
+    }
+
+    @Test
+    public void given_values_when_top_k_then_return_largest_first_and_lower_index_on_ties() {
+        long[] values = {5, 9, 1, 9, 7, 0, 5};
+
+        assertArrayEquals(new int[]{1, 3, 4}, CartAnalytics.top(values, 3));
+        assertArrayEquals(new int[]{1, 3, 4, 0, 6, 2, 5}, CartAnalytics.top(values, 10));
+        assertArrayEquals(new int[0], CartAnalytics.top(values, 0));
+    }
+
+    @Test
+    public void given_many_lines_when_aggregated_in_parallel_then_results_match_the_carts() throws PurchaseException {
+        Random random = new Random(5);
+        Product[] products = new Product[500];
+        for (int p = 0; p < products.length; p++) {
+            products[p] = product("ID" + p, 1 + random.nextInt(10_000));
+        }
+        ProductCatalog dictionary = new ProductCatalog();
+        CartColumns.CartColumnsBuilder builder = new CartColumns.CartColumnsBuilder(dictionary);
+        long[] expectedQuantities = new long[products.length];
+        long expectedRevenue = 0;
+        for (int c = 0; c < 30_000; c++) {
+            Cart cart = new Cart();
+            for (int l = 0; l < 10; l++) {
+                cart.add(new Item(products[random.nextInt(products.length)], 1 + random.nextInt(4)));
+            }
+            for (Item line : cart.getItems().values()) {
+                expectedQuantities[Integer.parseInt(line.getId().substring(2))] += line.getQuantity();
+            }
+            expectedRevenue += cart.priceInCents();
+            builder.add(cart, c * 60_000L);
+        }
+        CartColumns columns = builder.build();
+
+        CartAnalytics sequential = new CartAnalytics(columns, new ForkJoinPool(1));
+        CartAnalytics parallel = new CartAnalytics(columns, new ForkJoinPool(4));
+
+        long[] quantities = parallel.quantityByProduct();
+        for (int p = 0; p < products.length; p++) {
+            assertThat(quantities[dictionary.code("ID" + p)], is(expectedQuantities[p]));
+        }
+        assertArrayEquals(sequential.revenueByProduct(), parallel.revenueByProduct());
+        assertArrayEquals(sequential.cartTotals(), parallel.cartTotals());
+        assertArrayEquals(sequential.averageCartValueByHour(), parallel.averageCartValueByHour());
+        long revenue = 0;
+        for (long productRevenue : parallel.revenueByProduct()) {
+            revenue += productRevenue;
+        }
+        assertThat(revenue, is(expectedRevenue));
+    }
+
+    private static Cart cart(Item... items) throws PurchaseException {
+        Cart cart = new Cart();
+        cart.add(items);
+        return cart;
+    }
+}
@@ -0,0 +1,47 @@
+package com.kata.purchase.exception;
+
+import org.junit.Test;
+
+import static com.kata.purchase.exception.ErrorCode.ITEM_NOT_FOUND;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PurchaseExceptionTest {
+
+    @Test
+    public void given_exception_without_stack_trace_when_getStackTrace_then_return_empty_trace() {
+        PurchaseException exception = new PurchaseException(ITEM_NOT_FOUND, false);
+
+        assertThat(exception.getStackTrace().length, is(0));
+        assertThat(exception.getMessage(), is(ITEM_NOT_FOUND.getMessage()));
+    }
+
+    @Test
+    public void given_exception_without_stack_trace_when_add_suppressed_then_keep_it() {
+        PurchaseException exception = new PurchaseException(ITEM_NOT_FOUND, false);
+        IllegalStateException suppressed = new IllegalStateException();
+
+        exception.addSuppressed(suppressed);
+
+        assertThat(exception.getSuppressed().length, is(1));
+        assertThat(exception.getSuppressed()[0], is(sameInstance(suppressed)));
+    }
+
+    @Test
+    public void given_error_code_when_check_then_throw_purchase_exception_with_that_code() {
+        try {
+            PurchaseException.check(ITEM_NOT_FOUND);
+            fail();
+        } catch (PurchaseException e) {
+            assertThat(e.getCode(), is(ITEM_NOT_FOUND));
+        }
+    }
+
+    @Test
+    public void given_null_code_when_check_then_do_nothing() throws PurchaseException {
+        PurchaseException.check(null);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.kata.purchase.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RecordingCartMetricsTest {
+
+    @Test
+    public void given_values_when_recorded_then_percentiles_are_within_one_bucket() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.valueAtPercentile(50), is(both(greaterThanOrEqualTo(500L)).and(lessThan(500L * 9 / 8 + 1))));
+        assertThat(histogram.valueAtPercentile(99), is(both(greaterThanOrEqualTo(990L)).and(lessThan(990L * 9 / 8 + 1))));
+        assertThat(histogram.valueAtPercentile(100), is(both(greaterThanOrEqualTo(1000L)).and(lessThan(1000L * 9 / 8 + 1))));
+    }
+
+    @Test
+    public void given_any_value_when_bucketed_then_bucket_upper_bound_is_not_below_it() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = Histogram.index(value);
+            assertThat(Histogram.highestValue(index), is(greaterThanOrEqualTo(value)));
+            assertThat(index == 0 || Histogram.highestValue(index - 1) < value, is(true));
+        }
+    }
+
+    @Test
+    public void given_empty_histogram_when_percentile_then_return_0() {
+        assertThat(new Histogram().valueAtPercentile(99), is(0L));
+    }
+
+    @Test
+    public void given_recorded_events_when_exported_then_write_counters_and_histograms() {
+        CartMetrics metrics = new RecordingCartMetrics();
+        metrics.lineInserted();
+        metrics.lineInserted();
+        metrics.lineMerged();
+        metrics.lineNotFound();
+        metrics.sized(3);
+        metrics.printed(2000);
+        StringBuilder out = new StringBuilder();
+
+        metrics.exportTo(new AppendableExporter(out));
+
+        String exported = out.toString();
+        assertThat(exported, containsString("cart.line.inserted 2"));
+        assertThat(exported, containsString("cart.line.merged 1"));
+        assertThat(exported, containsString("cart.line.notFound 1"));
+        assertThat(exported, containsString("cart.lines count=1 p50=3"));
+        assertThat(exported, containsString("cart.price.nanos count=0"));
+    }
+
+    @Test
+    public void given_default_configuration_then_metrics_are_disabled() {
+        assertThat(CartMetrics.CURRENT, is(sameInstance((CartMetrics) NoopCartMetrics.INSTANCE)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.kata.purchase.pricing;
+
+import com.kata.purchase.Cart;
+import com.kata.purchase.Item;
+import com.kata.purchase.exception.PurchaseException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.kata.purchase.Products.product;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PricingPlanTest {
+
+    private Cart cart;
+
+    @Before
+    public void setUp() throws PurchaseException {
+        cart = new Cart();
+        cart.add(new Item(product("ID1", 1000), 3),
+                new Item(product("ID2", 500), 2),
+                new Item(product("ID3", 250), 1));
+    }
+
+    @Test
+    public void given_empty_plan_when_price_then_total_is_cart_price() {
+        PriceBreakdown price = new PricingPlan.PricingPlanBuilder().build().price(cart);
+
+        assertThat(price.getSubtotalInCents(), is(cart.priceInCents()));
+        assertThat(price.getTotalInCents(), is(cart.priceInCents()));
+    }
+
+    @Test
+    public void given_percent_and_amount_off_when_price_then_apply_them_in_registration_order() {
+        PricingPlan plan = new PricingPlan.PricingPlanBuilder()
+                .percentOff("ID1", 1000)
+                .amountOff("ID1", 100)
+                .amountOff("ID3", 1000)
+                .build();
+
+        PriceBreakdown price = plan.price(cart);
+
+        assertThat(price.getLineDiscountInCents(), is(300L + 300L + 250L));
+        assertThat(price.getTotalInCents(), is(3000L + 1000L + 250L - 850L));
+    }
+
+    @Test
+    public void given_3_for_2_when_price_3_units_then_one_is_free() {
+        PricingPlan plan = new PricingPlan.PricingPlanBuilder().multiBuy("ID1", 2, 1).build();
+
+        assertThat(plan.price(cart).getLineDiscountInCents(), is(1000L));
+    }
+
+    @Test
+    public void given_overlapping_bundles_when_price_then_each_unit_counts_for_one_bundle() {
+        PricingPlan plan = new PricingPlan.PricingPlanBuilder()
+                .bundle(200, "ID1", "ID2")
+                .bundle(50, "ID1", "ID3")
+                .build();
+
+        PriceBreakdown price = plan.price(cart);
+
+        assertThat(price.getBundleDiscountInCents(), is(2 * 200L + 50L));
+    }
+
+    @Test
+    public void given_thresholds_and_vat_when_price_then_apply_highest_reached_threshold_then_vat() {
+        PricingPlan plan = new PricingPlan.PricingPlanBuilder()
+                .cartThreshold(1000, 500)
+                .cartThreshold(4000, 1000)
+                .cartThreshold(10000, 2000)
+                .vat(2000)
+                .build();
+
+        PriceBreakdown price = plan.price(cart);
+
+        assertThat(price.getCartDiscountInCents(), is(425L));
+        assertThat(price.getNetInCents(), is(3825L));
+        assertThat(price.getVatInCents(), is(765L));
+        assertThat(price.getTotalInCents(), is(4590L));
+    }
+
+    @Test
+    public void given_custom_line_rule_when_it_returns_more_than_the_amount_then_line_is_not_priced_up() {
+        PricingPlan plan = new PricingPlan.PricingPlanBuilder()
+                .lineRule("ID2", (quantity, unitPriceInCents, amountInCents) -> amountInCents * 2)
+                .lineRule("ID3", (quantity, unitPriceInCents, amountInCents) -> -1)
+                .build();
+
+        PriceBreakdown price = plan.price(cart);
+
+        assertThat(price.getLineDiscountInCents(), is(250L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void given_multi_buy_without_free_unit_when_build_then_throw_illegal_argument_exception() {
+        new PricingPlan.PricingPlanBuilder().multiBuy("ID1", 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void given_bundle_listing_a_product_twice_when_build_then_throw_illegal_argument_exception() {
+        new PricingPlan.PricingPlanBuilder().bundle(100, "ID1", "ID2", "ID1");
+    }
+}